@@ -0,0 +1,72 @@
+package plp.enquanto.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.openjdk.jmh.annotations.*;
+
+import plp.enquanto.Analise;
+import plp.enquanto.linguagem.Linguagem.Programa;
+import plp.enquanto.parser.EnquantoParser;
+import plp.enquanto.parser.MeuVisitor;
+
+/**
+ * Fases de entrada, separadas: análise léxica, análise sintática (SLL, o
+ * primeiro estágio de Analise.parse), construção da árvore a partir da
+ * árvore de análise pronta, e o caminho completo até o Programa.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnaliseBench {
+
+    @Param({"1000", "10000"})
+    public int linhas;
+
+    private byte[] fonte;
+    private ParseTree arvore;
+
+    @Setup
+    public void prepare() throws Exception {
+        fonte = Cargas.fonte(linhas).getBytes(StandardCharsets.UTF_8);
+        arvore = sll(Analise.parser("bench", fonte)).programa();
+    }
+
+    private static EnquantoParser sll(EnquantoParser parser) {
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+
+        return parser;
+    }
+
+    @Benchmark
+    public int lexico() throws Exception {
+        final CommonTokenStream tokens = (CommonTokenStream) Analise.parser("bench", fonte).getInputStream();
+        tokens.fill();
+
+        return tokens.size();
+    }
+
+    @Benchmark
+    public ParseTree sintatico() throws Exception {
+        return sll(Analise.parser("bench", fonte)).programa();
+    }
+
+    @Benchmark
+    public Object construcao() {
+        return new MeuVisitor().visit(arvore);
+    }
+
+    @Benchmark
+    public Programa completa() throws Exception {
+        return Analise.parse(Analise.parser("bench", fonte));
+    }
+}
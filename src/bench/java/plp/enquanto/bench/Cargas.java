@@ -0,0 +1,119 @@
+package plp.enquanto.bench;
+
+/**
+ * Programas gerados para os benchmarks, nos moldes dos scripts de testes/
+ * mas em escala: cada carga exercita uma construção da linguagem num laço
+ * de n iterações.
+ */
+final class Cargas {
+    static final int RAMOS = 32;
+    static final int CASOS = 64;
+
+    private Cargas() {
+    }
+
+    static String programa(String carga, int n) {
+        if ("enquanto".equals(carga))
+            return enquanto(n);
+        if ("para".equals(carga))
+            return para(n);
+        if ("senaose".equals(carga))
+            return senaose(n);
+        if ("escolha".equals(carga))
+            return escolha(n);
+        if ("funcao".equals(carga))
+            return funcao(n);
+
+        throw new IllegalArgumentException("Carga desconhecida: " + carga);
+    }
+
+    static String enquanto(int n) {
+        return "i := 0; s := 0;\n"
+                + "enquanto i < " + n + " faca { s := s + i * 3; i := i + 1 };\n"
+                + "escreva s";
+    }
+
+    static String para(int n) {
+        return "s := 0;\n"
+                + "para i de 1 ate " + n + " passo 2 faca s := s + i;\n"
+                + "escreva s";
+    }
+
+    // cadeia de RAMOS condições, percorrida até o ramo de x
+    static String senaose(int n) {
+        final StringBuilder se = new StringBuilder("se x = 0 entao s := s + 0\n");
+
+        for (int k = 1; k < RAMOS; k++) {
+            se.append("    senaose x = ").append(k).append(" entao s := s + ").append(k).append('\n');
+        }
+
+        se.append("    senao s := s - 1");
+
+        return "i := 0; s := 0;\n"
+                + "enquanto i < " + n + " faca {\n"
+                + "    x := i - (i / " + RAMOS + ") * " + RAMOS + ";\n"
+                + "    " + se + ";\n"
+                + "    i := i + 1\n"
+                + "};\n"
+                + "escreva s";
+    }
+
+    static String escolha(int n) {
+        final StringBuilder escolha = new StringBuilder("escolha x\n");
+
+        for (int k = 0; k < CASOS; k++) {
+            escolha.append("        caso ").append(k).append(" : s := s + ").append(k).append('\n');
+        }
+
+        escolha.append("        outro : skip");
+
+        return "i := 0; s := 0;\n"
+                + "enquanto i < " + n + " faca {\n"
+                + "    x := i - (i / " + CASOS + ") * " + CASOS + ";\n"
+                + "    " + escolha + ";\n"
+                + "    i := i + 1\n"
+                + "};\n"
+                + "escreva s";
+    }
+
+    static String funcao(int n) {
+        return "f(a, b) = a * b + a;\n"
+                + "g(a) = f(a, a - 1);\n"
+                + "i := 0; s := 0;\n"
+                + "enquanto i < " + n + " faca { y := g(i); s := s + y; i := i + 1 };\n"
+                + "escreva s";
+    }
+
+    // programa grande e variado, de uma instrução por linha, para medir a
+    // análise
+    static String fonte(int linhas) {
+        final StringBuilder fonte = new StringBuilder("f(a, b) = a * b + a;\nx := 0");
+
+        for (int i = 0; i < linhas; i++) {
+            fonte.append(";\n");
+
+            switch (i % 6) {
+                case 0:
+                    fonte.append("x := (x + ").append(i).append(") * 2 - x / 3");
+                    break;
+                case 1:
+                    fonte.append("se x < ").append(i).append(" e nao x = 3 entao x := x + 1 ")
+                            .append("senaose x > 7 ou x <> 2 entao skip senao { y := x ^ 2; escreva y }");
+                    break;
+                case 2:
+                    fonte.append("escolha x caso 0 : skip caso 1 : exiba \"um\" outro : x := 0");
+                    break;
+                case 3:
+                    fonte.append("enquanto x > ").append(i).append(" faca x := x - 1");
+                    break;
+                case 4:
+                    fonte.append("para i de 1 ate 3 passo 1 faca x := x + i");
+                    break;
+                default:
+                    fonte.append("y := f(x, ").append(i).append(")");
+            }
+        }
+
+        return fonte.toString();
+    }
+}
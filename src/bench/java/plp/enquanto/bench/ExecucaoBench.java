@@ -0,0 +1,93 @@
+package plp.enquanto.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import plp.enquanto.Analise;
+import plp.enquanto.linguagem.Contexto;
+import plp.enquanto.linguagem.Entrada;
+import plp.enquanto.linguagem.Especializador;
+import plp.enquanto.linguagem.Fusor;
+import plp.enquanto.linguagem.Linguagem.Programa;
+import plp.enquanto.linguagem.MaquinaVirtual;
+import plp.enquanto.linguagem.Montador;
+import plp.enquanto.linguagem.Otimizador;
+import plp.enquanto.linguagem.Propagador;
+import plp.enquanto.linguagem.Saida;
+
+/**
+ * Execução das cargas de Cargas, cada uma num contexto novo, com a saída
+ * descartada. O programa é construído, otimizado, propagado, otimizado de
+ * novo e fundido uma vez, como em Principal; no modo especializado, é
+ * também especializado uma vez, e no modo vm é montado uma vez para a
+ * MaquinaVirtual.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecucaoBench {
+
+    private static final OutputStream DESCARTE = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Param({"enquanto", "para", "senaose", "escolha", "funcao"})
+    public String carga;
+
+    @Param({"interpretado", "especializado", "vm"})
+    public String modo;
+
+    @Param({"100000"})
+    public int n;
+
+    private Programa programa;
+    private MaquinaVirtual maquina;
+
+    @Setup
+    public void prepare() throws Exception {
+        final byte[] fonte = Cargas.programa(carga, n).getBytes(StandardCharsets.UTF_8);
+
+        final Otimizador otimizador = new Otimizador();
+
+        programa = otimizador.transforme(Analise.parse(Analise.parser(carga, fonte)));
+        programa = new Propagador().transforme(programa);
+        programa = otimizador.transforme(programa);
+        programa = new Fusor().transforme(programa);
+
+        if ("especializado".equals(modo))
+            programa = new Especializador().transforme(programa);
+        else if ("vm".equals(modo))
+            maquina = new Montador().monte(programa);
+    }
+
+    @Benchmark
+    public Contexto execute() {
+        final Saida saida = new Saida(DESCARTE, false, Saida.LIMITE);
+        final Entrada entrada = new Entrada(new ByteArrayInputStream(new byte[0]));
+        final Contexto contexto;
+
+        if (maquina != null) {
+            contexto = new Contexto(programa, entrada, saida);
+            maquina.execute(contexto);
+        } else {
+            contexto = programa.execute(entrada, saida);
+        }
+
+        saida.descarregue();
+
+        return contexto;
+    }
+}
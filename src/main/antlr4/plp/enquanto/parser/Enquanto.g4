@@ -1,8 +1,12 @@
 grammar Enquanto;
 
-programa: seqInstr
+programa: seqInstr EOF
         ;
 
+// uma entrada da sessão interativa
+trecho: seqInstr ';'? EOF
+      ;
+
 decl: declFuncao
     ;
 
@@ -35,7 +39,7 @@ comando: ID ':=' expressao                          # atribuicao
          'senao' comando                            # se
        | 'para' ID
          'de' expressao
-         'ate' expressao ('passo' INT)?
+         'ate' expressao ('passo' expressao)?
          'faca' comando                             # para
        | 'enquanto' bool 'faca' comando             # enquanto
        | 'escolha' expressao
@@ -47,7 +51,7 @@ comando: ID ':=' expressao                          # atribuicao
        | '{' seqComando '}'                         # bloco
        ;
 
-expressao: ( exprAtom | exprAdd )                   # exprArit
+expressao: exprAdd                                  # exprArit
          | 'leia'                                   # leia
          | ( '-' ) expressao                        # exprNeg
          | execFuncao                               # exprExecFuncao
@@ -59,24 +63,26 @@ exprAtom: INT                                       # inteiro
         ;
 
 exprAdd: exprMul (( '+' | '-' ) exprMul)*
-       | '(' exprMul ')'
        ;
 
 exprMul: exprPot (( '*' | '/' | '%' ) exprPot)*
-       | '(' exprPot ')'
        ;
 
 exprPot: exprAtom ('^' exprAtom)*
-       | '(' exprAtom ')'
        ;
 
-bool: ('verdadeiro'|'falso')                        # booleano
-    | 'nao' bool                                    # naoLogico
-    | expressao (operador_rel expressao)+           # exprBool
-    | bool (operador_bool bool)+                    # exprBool
-    | '(' bool ')'                                  # boolPar
+// operadores lógicos com a mesma precedência, associando à direita;
+// nao se aplica só ao operando seguinte
+bool: boolAtom                                      # boolSimples
+    | boolAtom operador_bool bool                   # exprBool
     ;
 
+boolAtom: ('verdadeiro'|'falso')                    # booleano
+        | 'nao' boolAtom                            # naoLogico
+        | expressao operador_rel expressao          # exprRel
+        | '(' bool ')'                              # boolPar
+        ;
+
 operador_rel: '=' | '<=' | '>=' | '<>' | '<' | '>' ;
 operador_bool: 'e' | 'ou' | 'xor' ;
 
@@ -0,0 +1,96 @@
+package plp.enquanto;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import plp.enquanto.linguagem.Linguagem.Programa;
+import plp.enquanto.linguagem.Telemetria;
+import plp.enquanto.parser.EnquantoLexer;
+import plp.enquanto.parser.EnquantoParser;
+import plp.enquanto.parser.MeuVisitor;
+
+/**
+ * Análise do texto dos programas com o ANTLR. Fica fora do Principal
+ * porque carregá-lo, verificá-lo e achar seu main carregam as classes que
+ * seus métodos usam e declaram: assim, as do ANTLR só são carregadas
+ * quando já há um fonte lido para analisar.
+ */
+public final class Analise {
+    private Analise() {
+    }
+
+    static CharStream caracteres(String arq, byte[] fonte) throws IOException {
+        return CharStreams.fromChannel(
+                Channels.newChannel(new ByteArrayInputStream(fonte)), StandardCharsets.UTF_8,
+                4096, CodingErrorAction.REPLACE, arq, fonte.length);
+    }
+
+    public static EnquantoParser parser(String arq, byte[] fonte) throws IOException {
+        final EnquantoLexer lexer = new EnquantoLexer(caracteres(arq, fonte));
+        final CommonTokenStream tokens = new CommonTokenStream(lexer);
+
+        return new EnquantoParser(tokens);
+    }
+
+    public static Programa parse(EnquantoParser parser) {
+        return parse(parser, ConsoleErrorListener.INSTANCE);
+    }
+
+    // a árvore de fonte, guardada na cache quando não tem erros de sintaxe:
+    // com eles a árvore é parcial, e as mensagens do analisador se
+    // perderiam numa carga posterior
+    static Programa construa(String arq, byte[] fonte, CacheProgramas cache) throws IOException {
+        final EnquantoParser parser = parser(arq, fonte);
+        final Programa programa = parse(parser);
+
+        if (cache != null && parser.getNumberOfSyntaxErrors() == 0)
+            cache.guarde(fonte, programa);
+
+        return programa;
+    }
+
+    // SLL resolve a gramática sem o contexto completo e é bem mais rápido;
+    // só quando falha, por erro de sintaxe ou ambiguidade, o texto é
+    // reanalisado em LL, que também produz as mensagens de erro em erros
+    static Programa parse(EnquantoParser parser, ANTLRErrorListener erros) {
+        final Object evento = Telemetria.ATUAL.inicieAnalise();
+
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+
+        MeuVisitor visitor = new MeuVisitor();
+        boolean sll = true;
+
+        try {
+            try {
+                return visitor.construa(parser);
+            } catch (ParseCancellationException e) {
+                parser.reset();
+                parser.addErrorListener(erros);
+                parser.setErrorHandler(new DefaultErrorStrategy());
+                parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+
+                visitor = new MeuVisitor();
+                sll = false;
+
+                return visitor.construa(parser);
+            }
+        } finally {
+            Telemetria.ATUAL.termineAnalise(evento, parser.getSourceName(), sll, visitor.getConstrucao());
+        }
+    }
+}
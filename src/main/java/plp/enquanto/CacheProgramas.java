@@ -0,0 +1,150 @@
+package plp.enquanto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import plp.enquanto.linguagem.Linguagem.Programa;
+import plp.enquanto.linguagem.Serializador;
+
+/**
+ * Cache em disco das árvores já construídas, uma entrada por fonte,
+ * nomeada pelo SHA-256 do conteúdo. Cada entrada guarda, antes da árvore
+ * serializada, a versão do formato, o resumo do fonte e um CRC32 do corpo:
+ * entradas de outra versão são tratadas como desatualizadas, e as demais
+ * divergências como corrompidas. Em ambos os casos a entrada é ignorada e
+ * regravada após a análise.
+ */
+public class CacheProgramas {
+    private static final int MAGICO = 0x454E5141;
+
+    private final Path diretorio;
+
+    public CacheProgramas(String diretorio) throws IOException {
+        this.diretorio = Files.createDirectories(Paths.get(diretorio));
+    }
+
+    private static byte[] resumo(byte[] fonte) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(fonte);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Path arquivo(byte[] resumo) {
+        final StringBuilder nome = new StringBuilder();
+
+        for (byte b : resumo) {
+            nome.append(String.format("%02x", b));
+        }
+
+        return diretorio.resolve(nome.append(".enq").toString());
+    }
+
+    // a árvore guardada para o fonte, ou null se não houver entrada válida
+    public Programa carregue(byte[] fonte) {
+        final byte[] resumo = resumo(fonte);
+        final Path arquivo = arquivo(resumo);
+        final byte[] bytes;
+
+        try {
+            bytes = Files.readAllBytes(arquivo);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println(String.format("Cache: '%s' ilegível (%s).", arquivo, e.getMessage()));
+            return null;
+        }
+
+        try {
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+            if (in.readInt() != MAGICO)
+                throw new IOException("não é uma entrada de cache");
+
+            final int versao = in.readInt();
+
+            if (versao != Serializador.VERSAO) {
+                System.err.println(String.format("Cache: '%s' desatualizado (versão %d).", arquivo, versao));
+                return null;
+            }
+
+            final byte[] guardado = new byte[resumo.length];
+            in.readFully(guardado);
+
+            if (!Arrays.equals(guardado, resumo))
+                throw new IOException("resumo do fonte não confere");
+
+            final int tamanho = in.readInt();
+
+            if (tamanho < 0 || tamanho > in.available() - 8)
+                throw new IOException("tamanho inválido");
+
+            final byte[] corpo = new byte[tamanho];
+            in.readFully(corpo);
+
+            final CRC32 crc = new CRC32();
+            crc.update(corpo, 0, corpo.length);
+
+            if (in.readLong() != crc.getValue())
+                throw new IOException("CRC não confere");
+
+            final Programa programa = Serializador.leia(new DataInputStream(new ByteArrayInputStream(corpo)));
+            System.err.println(String.format("Cache: usando '%s'.", arquivo));
+
+            return programa;
+        } catch (IOException | RuntimeException e) {
+            System.err.println(String.format("Cache: '%s' corrompido (%s).", arquivo, e.getMessage()));
+            return null;
+        }
+    }
+
+    // grava a entrada num temporário e a move no lugar, para que execuções
+    // simultâneas nunca leiam uma entrada pela metade
+    public void guarde(byte[] fonte, Programa programa) {
+        final byte[] resumo = resumo(fonte);
+        final Path arquivo = arquivo(resumo);
+
+        try {
+            final ByteArrayOutputStream corpo = new ByteArrayOutputStream();
+            Serializador.escreva(programa, new DataOutputStream(corpo));
+
+            final CRC32 crc = new CRC32();
+            crc.update(corpo.toByteArray(), 0, corpo.size());
+
+            final ByteArrayOutputStream entrada = new ByteArrayOutputStream(corpo.size() + 64);
+            final DataOutputStream out = new DataOutputStream(entrada);
+
+            out.writeInt(MAGICO);
+            out.writeInt(Serializador.VERSAO);
+            out.write(resumo);
+            out.writeInt(corpo.size());
+            corpo.writeTo(out);
+            out.writeLong(crc.getValue());
+            out.flush();
+
+            final Path temporario = Files.createTempFile(diretorio, arquivo.getFileName().toString(), ".tmp");
+
+            try {
+                Files.write(temporario, entrada.toByteArray());
+                Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporario);
+            }
+        } catch (IOException e) {
+            System.err.println(String.format("Cache: não foi possível gravar '%s' (%s).", arquivo, e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package plp.enquanto;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Envia um programa ao Servidor, com a entrada padrão como entrada de leia,
+ * e escreve a saída e os erros à medida que chegam. Sai com o código de
+ * saída do programa. As opções são as do Principal que o Servidor aceita.
+ *
+ * Uso: Cliente [--porta P] [opções] programa.while
+ */
+public class Cliente {
+
+    public static int execute(int porta, List<String> opcoes, String arq, byte[] fonte, final InputStream entrada,
+            OutputStream saida, OutputStream erros) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), porta)) {
+            socket.setTcpNoDelay(true);
+
+            final DataOutputStream pedido = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            pedido.writeInt(opcoes.size());
+
+            for (String opcao : opcoes) {
+                pedido.writeUTF(opcao);
+            }
+
+            pedido.writeUTF(arq);
+            pedido.writeInt(fonte.length);
+            pedido.write(fonte);
+            pedido.flush();
+
+            // a entrada segue enquanto a resposta chega, para que um
+            // programa que lê e escreve aos poucos não trave a conexão
+            final Thread envio = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final byte[] buffer = new byte[8192];
+
+                    try {
+                        int n;
+
+                        while ((n = entrada.read(buffer)) >= 0) {
+                            pedido.write(buffer, 0, n);
+                            pedido.flush();
+                        }
+
+                        socket.shutdownOutput();
+                    } catch (IOException e) {
+                        // o servidor já respondeu e fechou a conexão
+                    }
+                }
+            });
+
+            envio.setDaemon(true);
+            envio.start();
+
+            final DataInputStream resposta = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final byte[] buffer = new byte[8192];
+
+            for (;;) {
+                final byte tipo = resposta.readByte();
+
+                if (tipo == Servidor.FIM)
+                    return resposta.readInt();
+
+                final OutputStream destino = tipo == Servidor.ERROS ? erros : saida;
+                int resto = resposta.readInt();
+
+                while (resto > 0) {
+                    final int n = resposta.read(buffer, 0, Math.min(buffer.length, resto));
+
+                    if (n < 0)
+                        throw new IOException("Resposta incompleta do servidor.");
+
+                    destino.write(buffer, 0, n);
+                    resto -= n;
+                }
+
+                destino.flush();
+            }
+        }
+    }
+
+    public static void main(String... args) throws IOException {
+        int porta = Servidor.PORTA;
+        String arq = null;
+        final List<String> opcoes = new ArrayList<String>();
+
+        for (int i = 0; i < args.length; i++) {
+            if ("--porta".equals(args[i]))
+                porta = Integer.parseInt(args[++i]);
+            else if ("--saida".equals(args[i]) || "--saida-limite".equals(args[i])) {
+                opcoes.add(args[i]);
+                opcoes.add(args[++i]);
+            } else if (args[i].startsWith("--"))
+                opcoes.add(args[i]);
+            else
+                arq = args[i];
+        }
+
+        final int codigo = execute(porta, opcoes, arq, Files.readAllBytes(Paths.get(arq)), System.in,
+                new FileOutputStream(FileDescriptor.out), new FileOutputStream(FileDescriptor.err));
+
+        System.exit(codigo);
+    }
+}
@@ -0,0 +1,239 @@
+package plp.enquanto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import plp.enquanto.linguagem.Contexto;
+import plp.enquanto.linguagem.Entrada;
+import plp.enquanto.linguagem.Especializador;
+import plp.enquanto.linguagem.Fusor;
+import plp.enquanto.linguagem.Linguagem.Ambiente;
+import plp.enquanto.linguagem.Linguagem.Instrucao;
+import plp.enquanto.linguagem.Linguagem.Programa;
+import plp.enquanto.linguagem.Memorizador;
+import plp.enquanto.linguagem.Otimizador;
+import plp.enquanto.linguagem.Propagador;
+import plp.enquanto.linguagem.Saida;
+import plp.enquanto.linguagem.Telemetria;
+import plp.enquanto.linguagem.Verificador;
+import plp.enquanto.parser.EnquantoParser;
+import plp.enquanto.parser.MeuVisitor;
+
+/**
+ * Sessão interativa: lê um trecho por vez, com uma ou mais instruções
+ * separadas por ';', e o executa sobre o mesmo Contexto. As variáveis e as
+ * funções declaradas continuam valendo nos trechos seguintes.
+ *
+ * Cada trecho é analisado, otimizado e executado sozinho, sem o histórico
+ * da sessão, de modo que o tempo de resposta não cresce com ela. Um trecho
+ * que termina no meio de uma instrução continua na linha seguinte; uma
+ * linha em branco o encerra.
+ *
+ * Os valores de leia vêm das mesmas linhas, a menos que --entrada indique
+ * um arquivo.
+ */
+public class Interativo {
+    private static final String FONTE = "interativo";
+
+    // devolvido por analise quando o trecho continua na próxima linha
+    private static final Programa INCOMPLETO = new Programa(Collections.<Instrucao>emptyList(), new Ambiente());
+
+    private final MeuVisitor visitor = new MeuVisitor();
+    private final boolean verificaEstouro;
+    private final boolean especializa;
+    private final Memorizador memorizador;
+
+    private BufferedReader leitor;
+    private PrintStream prompt;
+    private Contexto contexto;
+
+    public Interativo(boolean verificaEstouro, boolean especializa, boolean memoriza) {
+        this.verificaEstouro = verificaEstouro;
+        this.especializa = especializa;
+        this.memorizador = memoriza ? new Memorizador() : null;
+    }
+
+    /**
+     * Executa a sessão até o fim de fonte. Sem entrada, leia consome as
+     * linhas de fonte. O prompt só é escrito quando não é null.
+     */
+    public void execute(InputStream fonte, Saida saida, Entrada entrada, PrintStream prompt) throws IOException {
+        this.leitor = new BufferedReader(new InputStreamReader(fonte, StandardCharsets.UTF_8));
+        this.prompt = prompt;
+
+        if (entrada == null)
+            entrada = new Entrada(new Linhas());
+
+        final StringBuilder texto = new StringBuilder();
+
+        for (;;) {
+            escrevaPrompt(texto.length() == 0 ? "> " : "| ");
+
+            final String linha = leitor.readLine();
+            final boolean branca = linha == null || linha.trim().isEmpty();
+
+            if (branca && texto.length() == 0) {
+                if (linha == null)
+                    break;
+
+                continue;
+            }
+
+            if (linha != null)
+                texto.append(linha).append('\n');
+
+            final Programa trecho = analise(texto.toString(), branca);
+
+            if (trecho == INCOMPLETO)
+                continue;
+
+            texto.setLength(0);
+
+            if (trecho != null)
+                execute(trecho, entrada, saida);
+
+            if (linha == null)
+                break;
+        }
+    }
+
+    private void escrevaPrompt(String texto) {
+        if (prompt != null) {
+            prompt.print(texto);
+            prompt.flush();
+        }
+    }
+
+    // como Analise.parse, primeiro em SLL e depois em LL; só a última
+    // tentativa escreve as mensagens de erro, e não a faz enquanto o erro
+    // estiver no fim do texto e a próxima linha ainda puder completá-lo
+    private Programa analise(String texto, boolean encerrado) throws IOException {
+        final EnquantoParser parser = Analise.parser(FONTE, texto.getBytes(StandardCharsets.UTF_8));
+        final Object evento = Telemetria.ATUAL.inicieAnalise();
+        final long construcao = visitor.getConstrucao();
+        boolean sll = true;
+
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+
+        try {
+            try {
+                return visitor.construaTrecho(parser);
+            } catch (ParseCancellationException e) {
+                parser.reset();
+                parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+                sll = false;
+            }
+
+            try {
+                return visitor.construaTrecho(parser);
+            } catch (ParseCancellationException e) {
+                if (!encerrado && noFim(e))
+                    return INCOMPLETO;
+
+                parser.reset();
+                parser.addErrorListener(ConsoleErrorListener.INSTANCE);
+                parser.setErrorHandler(new DefaultErrorStrategy());
+            }
+
+            visitor.construaTrecho(parser);
+
+            return null;
+        } finally {
+            Telemetria.ATUAL.termineAnalise(evento, FONTE, sll, visitor.getConstrucao() - construcao);
+        }
+    }
+
+    private static boolean noFim(ParseCancellationException e) {
+        final Throwable causa = e.getCause();
+
+        return causa instanceof RecognitionException
+                && ((RecognitionException) causa).getOffendingToken().getType() == Token.EOF;
+    }
+
+    private void execute(Programa trecho, Entrada entrada, Saida saida) {
+        // só o trecho passa pelas transformações; as funções de trechos
+        // anteriores já passaram quando foram declaradas. Um erro encerra
+        // só o trecho: a sessão, e o que ele já alterou no contexto,
+        // continuam
+        try {
+            if (verificaEstouro)
+                trecho = new Verificador().transforme(trecho);
+
+            final Otimizador otimizador = new Otimizador();
+
+            trecho = otimizador.transforme(trecho);
+            trecho = new Propagador(true).transforme(trecho);
+            trecho = otimizador.transforme(trecho);
+            trecho = new Fusor().transforme(trecho);
+
+            if (memorizador != null)
+                trecho = memorizador.transforme(trecho);
+            if (especializa)
+                trecho = new Especializador().transforme(trecho);
+
+            if (contexto == null)
+                contexto = new Contexto(trecho, entrada, saida);
+
+            trecho.execute(contexto);
+        } catch (RuntimeException | StackOverflowError e) {
+            saida.descarregue();
+            System.err.println(String.format("Erro: %s", e.getMessage() == null ? e : e.getMessage()));
+        } finally {
+            saida.descarregue();
+        }
+    }
+
+    /**
+     * Fonte de leia que entrega uma linha da sessão de cada vez, lida do
+     * mesmo leitor dos trechos, para que nenhum dos dois consuma as linhas
+     * do outro.
+     */
+    private final class Linhas extends InputStream {
+        private byte[] linha = new byte[0];
+        private int posicao;
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int inicio, int tamanho) throws IOException {
+            if (posicao == linha.length) {
+                escrevaPrompt("? ");
+
+                final String proxima = leitor.readLine();
+
+                if (proxima == null)
+                    return -1;
+
+                linha = (proxima + "\n").getBytes(StandardCharsets.UTF_8);
+                posicao = 0;
+            }
+
+            final int n = Math.min(tamanho, linha.length - posicao);
+
+            System.arraycopy(linha, posicao, b, inicio, n);
+            posicao += n;
+
+            return n;
+        }
+    }
+}
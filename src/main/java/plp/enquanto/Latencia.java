@@ -0,0 +1,169 @@
+package plp.enquanto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compara a latência de execuções curtas de um programa em três modos: o
+ * Principal numa JVM nova a cada execução; o Cliente numa JVM nova,
+ * falando com um Servidor já aquecido; e pedidos ao mesmo Servidor feitos
+ * desta JVM, sem a partida de nenhuma. O Servidor é iniciado num processo
+ * à parte e encerrado no fim.
+ *
+ * Uso: Latencia [--execucoes N] [--aquecimento N] [--porta P]
+ *               [--entrada ARQ] programa.while
+ */
+public class Latencia {
+
+    private static final OutputStream DESCARTE = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private static List<String> java(String classe, String... args) {
+        final List<String> comando = new ArrayList<String>();
+
+        comando.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        comando.add("-cp");
+        comando.add(System.getProperty("java.class.path"));
+        comando.add(classe);
+        comando.addAll(Arrays.asList(args));
+
+        return comando;
+    }
+
+    // milissegundos de um processo, da partida ao fim
+    private static double processo(List<String> comando, File entrada, File descarte)
+            throws IOException, InterruptedException {
+        final ProcessBuilder construtor = new ProcessBuilder(comando)
+                .redirectErrorStream(true)
+                .redirectOutput(descarte);
+
+        if (entrada != null)
+            construtor.redirectInput(entrada);
+
+        final long inicio = System.nanoTime();
+        final Process processo = construtor.start();
+
+        if (entrada == null)
+            processo.getOutputStream().close();
+
+        processo.waitFor();
+
+        return (System.nanoTime() - inicio) / 1e6;
+    }
+
+    private static double pedido(int porta, String arq, byte[] fonte, byte[] entrada) throws IOException {
+        final long inicio = System.nanoTime();
+
+        Cliente.execute(porta, Collections.<String>emptyList(), arq, fonte, new ByteArrayInputStream(entrada),
+                DESCARTE, new ByteArrayOutputStream());
+
+        return (System.nanoTime() - inicio) / 1e6;
+    }
+
+    private static void espere(int porta) throws InterruptedException, IOException {
+        for (int i = 0; i < 200; i++) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), porta));
+                return;
+            } catch (ConnectException e) {
+                Thread.sleep(50);
+            }
+        }
+
+        throw new IOException(String.format("Servidor não respondeu na porta %d.", porta));
+    }
+
+    private static void relate(String modo, List<Double> tempos) {
+        Collections.sort(tempos);
+
+        double soma = 0;
+
+        for (double t : tempos) {
+            soma += t;
+        }
+
+        System.out.println(String.format("%-12s mediana %8.2f ms   p90 %8.2f ms   média %8.2f ms", modo,
+                tempos.get(tempos.size() / 2), tempos.get((int) (tempos.size() * 0.9)), soma / tempos.size()));
+    }
+
+    public static void main(String... args) throws IOException, InterruptedException {
+        String arq = null;
+        String entrada = null;
+        int execucoes = 20;
+        int aquecimento = 200;
+        int porta = Servidor.PORTA;
+
+        for (int i = 0; i < args.length; i++) {
+            if ("--execucoes".equals(args[i]))
+                execucoes = Integer.parseInt(args[++i]);
+            else if ("--aquecimento".equals(args[i]))
+                aquecimento = Integer.parseInt(args[++i]);
+            else if ("--porta".equals(args[i]))
+                porta = Integer.parseInt(args[++i]);
+            else if ("--entrada".equals(args[i]))
+                entrada = args[++i];
+            else
+                arq = args[i];
+        }
+
+        final byte[] fonte = Files.readAllBytes(Paths.get(arq));
+        final File arquivoEntrada = entrada == null ? null : new File(entrada);
+        final byte[] bytes = entrada == null ? new byte[0] : Files.readAllBytes(Paths.get(entrada));
+        final File descarte = File.createTempFile("latencia", ".out");
+
+        final Process servidor = new ProcessBuilder(java("plp.enquanto.Principal", "--servidor", String.valueOf(porta)))
+                .redirectErrorStream(true)
+                .redirectOutput(descarte)
+                .start();
+
+        try {
+            espere(porta);
+
+            // o servidor só vale depois de aquecido: classes carregadas,
+            // DFAs do analisador preenchidos e caminhos quentes compilados
+            for (int i = 0; i < aquecimento; i++) {
+                pedido(porta, arq, fonte, bytes);
+            }
+
+            final List<Double> frio = new ArrayList<Double>();
+            final List<Double> cliente = new ArrayList<Double>();
+            final List<Double> pedidos = new ArrayList<Double>();
+
+            for (int i = 0; i < execucoes; i++) {
+                frio.add(processo(java("plp.enquanto.Principal", arq), arquivoEntrada, descarte));
+                cliente.add(processo(java("plp.enquanto.Cliente", "--porta", String.valueOf(porta), arq),
+                        arquivoEntrada, descarte));
+                pedidos.add(pedido(porta, arq, fonte, bytes));
+            }
+
+            System.out.println(String.format("%s, %d execuções por modo.", arq, execucoes));
+            relate("frio", frio);
+            relate("cliente", cliente);
+            relate("servidor", pedidos);
+        } finally {
+            servidor.destroy();
+            servidor.waitFor();
+            descarte.delete();
+        }
+    }
+}
@@ -1,26 +1,41 @@
 package plp.enquanto;
 
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
-import org.antlr.v4.runtime.CharStream;
-import org.antlr.v4.runtime.CharStreams;
-import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.tree.ParseTree;
-import org.antlr.v4.runtime.tree.ParseTreeWalker;
-
+import plp.enquanto.linguagem.Compilador;
+import plp.enquanto.linguagem.Contexto;
+import plp.enquanto.linguagem.Entrada;
+import plp.enquanto.linguagem.Especializador;
+import plp.enquanto.linguagem.Fusor;
 import plp.enquanto.linguagem.Linguagem.Programa;
-import plp.enquanto.parser.EnquantoLexer;
-import plp.enquanto.parser.EnquantoParser;
-import plp.enquanto.parser.MeuListener;
+import plp.enquanto.linguagem.MaquinaVirtual;
+import plp.enquanto.linguagem.Memorizador;
+import plp.enquanto.linguagem.Montador;
+import plp.enquanto.linguagem.Otimizador;
+import plp.enquanto.linguagem.Perfilador;
+import plp.enquanto.linguagem.Propagador;
+import plp.enquanto.linguagem.Saida;
+import plp.enquanto.linguagem.Telemetria;
+import plp.enquanto.linguagem.Verificador;
 
 public class Principal {
 
-    private static ParseTree parse(String arq) {
-        CharStream input;
+    private static byte[] leiaFonte(String arq) {
         System.err.println(String.format("Abrindo arquivo: '%s'.", arq));
 
         try {
-            input = CharStreams.fromFileName(arq);
+            return Files.readAllBytes(Paths.get(arq));
         } catch (IOException e) {
             String err = String.format("Arquivo: '%s' não encontrado.", arq);
 
@@ -29,21 +44,234 @@ public class Principal {
 
             throw new RuntimeException(err);
         }
+    }
+
+    static Programa construa(String arq, CacheProgramas cache) throws IOException {
+        return construa(arq, cache, false);
+    }
+
+    static Programa construa(String arq, CacheProgramas cache, boolean verificaEstouro) throws IOException {
+        final byte[] fonte = leiaFonte(arq);
+        final Object evento = Telemetria.ATUAL.inicieConstrucao();
+        Programa programa = cache == null ? null : cache.carregue(fonte);
+        final boolean daCache = programa != null;
+
+        if (programa == null)
+            programa = Analise.construa(arq, fonte, cache);
+
+        return otimize(programa, evento, arq, daCache, verificaEstouro, System.err);
+    }
+
+    // as transformações comuns a todo Programa recém-construído; encerra o
+    // evento de construção aberto por quem o construiu
+    static Programa otimize(Programa programa, Object evento, String arq, boolean daCache,
+            boolean verificaEstouro, PrintStream erros) {
+        // antes do Otimizador, para que as constantes dobradas também
+        // sejam verificadas
+        if (verificaEstouro)
+            programa = new Verificador().transforme(programa);
+
+        // o Otimizador dobra as constantes do fonte antes da propagação, e
+        // depois dela o que a propagação deixou constante
+        final Otimizador otimizador = new Otimizador();
+        programa = otimizador.transforme(programa);
+
+        final Propagador propagador = new Propagador();
+        programa = propagador.transforme(programa);
+        erros.println(String.format("Propagação: %d ramos e %d atribuições removidos.",
+                propagador.getRamos(), propagador.getAtribuicoes()));
+
+        programa = otimizador.transforme(programa);
+        erros.println(String.format("Otimização: %d nós removidos.", otimizador.getRemovidos()));
+
+        final Fusor fusor = new Fusor();
+        programa = fusor.transforme(programa);
+        erros.println(String.format("Fusão: %d superinstruções.", fusor.getFundidos()));
+
+        Telemetria.ATUAL.termineConstrucao(evento, arq, daCache, otimizador.getRemovidos());
+
+        return programa;
+    }
+
+    // soma dos picos de uso das áreas do heap desde o último zereHeap()
+    private static long picoHeap() {
+        long pico = 0;
+
+        for (MemoryPoolMXBean area : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (area.getType() == MemoryType.HEAP)
+                pico += area.getPeakUsage().getUsed();
+        }
+
+        return pico;
+    }
+
+    private static void zereHeap() {
+        for (MemoryPoolMXBean area : ManagementFactory.getMemoryPoolMXBeans()) {
+            area.resetPeakUsage();
+        }
+    }
+
+    private static String nomeClasse(String arq) {
+        String nome = new File(arq).getName();
+
+        if (nome.indexOf('.') > 0)
+            nome = nome.substring(0, nome.indexOf('.'));
+
+        final StringBuilder classe = new StringBuilder();
+
+        for (char c : nome.toCharArray()) {
+            classe.append(Character.isJavaIdentifierPart(c) ? c : '_');
+        }
 
-        final EnquantoLexer lexer = new EnquantoLexer(input);
-        final CommonTokenStream tokens = new CommonTokenStream(lexer);
-        final EnquantoParser parser = new EnquantoParser(tokens);
+        if (classe.length() == 0 || !Character.isJavaIdentifierStart(classe.charAt(0)))
+            classe.insert(0, '_');
 
-        return parser.programa();
+        return classe.toString();
     }
 
     public static void main(String... args) throws IOException {
-        String arq = args[0];
-        final ParseTree tree = parse(arq);
-        final ParseTreeWalker walker = new ParseTreeWalker();
-        final MeuListener listener = new MeuListener();
-        walker.walk(listener, tree);
-        Programa p1 = listener.getPrograma();
-        p1.execute();
+        String arq = null;
+        String compilado = null;
+        boolean especializa = false;
+        boolean memoriza = false;
+        // interativo no terminal, em bloco quando a saída é redirecionada
+        boolean porLinha = System.console() != null;
+        int limite = Saida.LIMITE;
+        String entrada = null;
+        CacheProgramas cache = null;
+        boolean heap = false;
+        boolean perfil = false;
+        boolean vm = false;
+        boolean verificaEstouro = false;
+        boolean interativo = false;
+        int servidor = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            if ("--compile".equals(args[i]))
+                compilado = args[++i];
+            else if ("--especializa".equals(args[i]))
+                especializa = true;
+            else if ("--memoriza".equals(args[i]))
+                memoriza = true;
+            else if ("--saida".equals(args[i]))
+                porLinha = "linha".equals(args[++i]);
+            else if ("--saida-limite".equals(args[i]))
+                limite = Integer.parseInt(args[++i]);
+            else if ("--entrada".equals(args[i]))
+                entrada = args[++i];
+            else if ("--cache".equals(args[i]))
+                cache = new CacheProgramas(args[++i]);
+            else if ("--heap".equals(args[i]))
+                heap = true;
+            else if ("--profile".equals(args[i]))
+                perfil = true;
+            else if ("--vm".equals(args[i]))
+                vm = true;
+            else if ("--verifica-estouro".equals(args[i]))
+                verificaEstouro = true;
+            else if ("--interativo".equals(args[i]))
+                interativo = true;
+            else if ("--servidor".equals(args[i]))
+                servidor = Integer.parseInt(args[++i]);
+            else
+                arq = args[i];
+        }
+
+        // as opções de execução vêm em cada pedido
+        if (servidor > 0) {
+            new Servidor(servidor).execute();
+
+            return;
+        }
+
+        // sem arquivo, a sessão interativa; a máquina virtual, o perfil e
+        // a compilação só valem para programas inteiros
+        if (interativo || arq == null) {
+            final Saida saida = new Saida(new FileOutputStream(FileDescriptor.out), true, limite);
+            Entrada leitura = null;
+
+            if (entrada != null) {
+                leitura = new Entrada(System.in);
+                leitura.mapeie(entrada);
+            }
+
+            new Interativo(verificaEstouro, especializa, memoriza)
+                    .execute(System.in, saida, leitura, System.console() == null ? null : System.out);
+
+            return;
+        }
+
+        Programa p1 = construa(arq, cache, verificaEstouro);
+
+        if (heap) {
+            System.err.println(String.format("Heap: pico de %d MiB na construção.", picoHeap() >> 20));
+
+            // a árvore de análise e os tokens já estão inalcançáveis; a
+            // coleta os tira da medida da execução
+            System.gc();
+            zereHeap();
+        }
+
+        if (compilado != null) {
+            final Compilador compilador = new Compilador(nomeClasse(arq));
+
+            System.err.println(String.format("Gerando: '%s'.", compilado));
+            Compilador.salve(compilador.getClasse(), compilador.compile(p1), compilado);
+        } else {
+            // só as transformações pedidas são carregadas
+            final Memorizador memorizador = memoriza ? new Memorizador() : null;
+
+            // a máquina virtual executa a árvore otimizada e fundida; a
+            // memorização, a especialização e o perfil só valem sem ela
+            final MaquinaVirtual maquina = vm ? new Montador().monte(p1) : null;
+
+            if (maquina != null)
+                System.err.println(String.format("Máquina virtual: %d posições de código.", maquina.getTamanho()));
+            else if (memoriza)
+                p1 = memorizador.transforme(p1);
+            if (especializa && maquina == null)
+                p1 = new Especializador().transforme(p1);
+
+            final Perfilador perfilador = perfil ? new Perfilador() : null;
+
+            if (perfil && maquina == null)
+                p1 = perfilador.transforme(p1);
+
+            final Saida saida = new Saida(new FileOutputStream(FileDescriptor.out), porLinha, limite);
+            final Entrada leitura = new Entrada(System.in);
+
+            if (entrada != null)
+                leitura.mapeie(entrada);
+
+            final Contexto contexto = new Contexto(p1, leitura, saida);
+
+            try {
+                if (maquina != null)
+                    maquina.execute(contexto);
+                else
+                    p1.execute(contexto);
+            } catch (ArithmeticException e) {
+                saida.descarregue();
+                System.err.println(String.format("Erro: %s", e.getMessage()));
+                System.exit(1);
+            } finally {
+                saida.descarregue();
+            }
+
+            if (heap)
+                System.err.println(String.format("Heap: pico de %d MiB na execução.", picoHeap() >> 20));
+
+            if (memoriza && maquina == null) {
+                System.err.println(String.format("Memorização: %d acertos, %d falhas.",
+                        memorizador.getAcertos(contexto), memorizador.getFalhas(contexto)));
+                System.err.print(memorizador.relatorio(contexto));
+            }
+
+            if (perfil && maquina == null) {
+                final String fonte = new String(Files.readAllBytes(Paths.get(arq)), StandardCharsets.UTF_8);
+
+                System.err.print(perfilador.relatorio(contexto, Arrays.asList(fonte.split("\\r?\\n|\\r", -1))));
+            }
+        }
     }
 }
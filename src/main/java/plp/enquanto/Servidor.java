@@ -0,0 +1,270 @@
+package plp.enquanto;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+
+import plp.enquanto.linguagem.Contexto;
+import plp.enquanto.linguagem.Entrada;
+import plp.enquanto.linguagem.Especializador;
+import plp.enquanto.linguagem.Linguagem.Programa;
+import plp.enquanto.linguagem.MaquinaVirtual;
+import plp.enquanto.linguagem.Memorizador;
+import plp.enquanto.linguagem.Montador;
+import plp.enquanto.linguagem.Saida;
+import plp.enquanto.linguagem.Telemetria;
+import plp.enquanto.parser.EnquantoLexer;
+import plp.enquanto.parser.EnquantoParser;
+
+/**
+ * Executa os programas recebidos por um socket local, numa JVM que continua
+ * no ar entre as execuções: as classes carregadas, os DFAs do analisador e
+ * o código compilado pelo JIT servem a todos os pedidos. Cada pedido tem
+ * sua árvore, seu Contexto, sua Entrada e sua Saida, e nada do que um
+ * programa faz é visto pelos seguintes.
+ *
+ * O pedido traz o número de opções e cada opção em writeUTF, o nome do
+ * programa em writeUTF, o tamanho do fonte e seus bytes; o resto da
+ * conexão, até o shutdownOutput do cliente, é a entrada de leia. A resposta
+ * é uma sequência de quadros SAIDA ou ERROS, cada um com o tamanho e os
+ * bytes, encerrada por FIM e o código de saída. Só escuta no endereço de
+ * loopback.
+ */
+public class Servidor {
+    public static final int PORTA = 7070;
+
+    static final byte SAIDA = 'o';
+    static final byte ERROS = 'e';
+    static final byte FIM = 'x';
+
+    // milissegundos que a conexão espera o cliente fechar depois de FIM
+    private static final int ESPERA = 1000;
+
+    private final int porta;
+
+    // uma execução longa não atrasa as demais
+    private final ExecutorService execucoes = Executors.newCachedThreadPool();
+
+    // cada thread reaproveita seus analisadores, trocando só o texto
+    private final ThreadLocal<EnquantoParser> analisadores = new ThreadLocal<EnquantoParser>() {
+        @Override
+        protected EnquantoParser initialValue() {
+            return new EnquantoParser(new CommonTokenStream(new EnquantoLexer(null)));
+        }
+    };
+
+    public Servidor(int porta) {
+        this.porta = porta;
+    }
+
+    public void execute() throws IOException {
+        try (ServerSocket servidor = new ServerSocket(porta, 50, InetAddress.getLoopbackAddress())) {
+            System.err.println(String.format("Servidor: aguardando em %s.", servidor.getLocalSocketAddress()));
+
+            for (;;) {
+                final Socket conexao = servidor.accept();
+
+                execucoes.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        atenda(conexao);
+                    }
+                });
+            }
+        }
+    }
+
+    private void atenda(Socket conexao) {
+        try (Socket socket = conexao) {
+            socket.setTcpNoDelay(true);
+
+            final DataInputStream pedido = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final DataOutputStream resposta = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            final PrintStream erros = new PrintStream(new Quadros(resposta, ERROS), true);
+
+            final List<String> opcoes = new ArrayList<String>();
+            final int n = pedido.readInt();
+
+            for (int i = 0; i < n; i++) {
+                opcoes.add(pedido.readUTF());
+            }
+
+            final String arq = pedido.readUTF();
+            final byte[] fonte = new byte[pedido.readInt()];
+
+            pedido.readFully(fonte);
+
+            int codigo;
+
+            try {
+                codigo = execute(opcoes, arq, fonte, pedido, new Quadros(resposta, SAIDA), erros);
+            } catch (RuntimeException | StackOverflowError e) {
+                erros.println(String.format("Erro: %s", e.getMessage() == null ? e : e.getMessage()));
+                codigo = 1;
+            }
+
+            resposta.writeByte(FIM);
+            resposta.writeInt(codigo);
+            resposta.flush();
+
+            // fechar com entrada não lida descartaria a resposta ainda em
+            // trânsito; o cliente fecha a conexão assim que recebe FIM
+            socket.shutdownOutput();
+            socket.setSoTimeout(ESPERA);
+
+            final byte[] resto = new byte[8192];
+
+            while (pedido.read(resto) >= 0) {
+                continue;
+            }
+        } catch (IOException e) {
+            System.err.println(String.format("Conexão encerrada: %s", e.getMessage()));
+        }
+    }
+
+    // como Principal.main, com a entrada, a saída e os erros do pedido
+    private int execute(List<String> opcoes, String arq, byte[] fonte, InputStream entrada, OutputStream destino,
+            PrintStream erros) throws IOException {
+        boolean especializa = false;
+        boolean memoriza = false;
+        boolean porLinha = false;
+        int limite = Saida.LIMITE;
+        boolean vm = false;
+        boolean verificaEstouro = false;
+
+        for (int i = 0; i < opcoes.size(); i++) {
+            if ("--especializa".equals(opcoes.get(i)))
+                especializa = true;
+            else if ("--memoriza".equals(opcoes.get(i)))
+                memoriza = true;
+            else if ("--saida".equals(opcoes.get(i)))
+                porLinha = "linha".equals(opcoes.get(++i));
+            else if ("--saida-limite".equals(opcoes.get(i)))
+                limite = Integer.parseInt(opcoes.get(++i));
+            else if ("--vm".equals(opcoes.get(i)))
+                vm = true;
+            else if ("--verifica-estouro".equals(opcoes.get(i)))
+                verificaEstouro = true;
+            else {
+                erros.println(String.format("Opção não aceita pelo servidor: '%s'.", opcoes.get(i)));
+                return 2;
+            }
+        }
+
+        final ANTLRErrorListener ouvinte = erros(erros);
+        final EnquantoParser parser = analisador(arq, fonte, ouvinte);
+        final Object evento = Telemetria.ATUAL.inicieConstrucao();
+
+        Programa p1 = Analise.parse(parser, ouvinte);
+        p1 = Principal.otimize(p1, evento, arq, false, verificaEstouro, erros);
+
+        final Memorizador memorizador = new Memorizador();
+        final MaquinaVirtual maquina = vm ? new Montador().monte(p1) : null;
+
+        if (maquina != null)
+            erros.println(String.format("Máquina virtual: %d posições de código.", maquina.getTamanho()));
+        else if (memoriza)
+            p1 = memorizador.transforme(p1);
+        if (especializa && maquina == null)
+            p1 = new Especializador().transforme(p1);
+
+        final Saida saida = new Saida(destino, porLinha, limite);
+        final Contexto contexto = new Contexto(p1, new Entrada(entrada), saida);
+
+        try {
+            if (maquina != null)
+                maquina.execute(contexto);
+            else
+                p1.execute(contexto);
+        } catch (ArithmeticException e) {
+            saida.descarregue();
+            erros.println(String.format("Erro: %s", e.getMessage()));
+
+            return 1;
+        } finally {
+            saida.descarregue();
+        }
+
+        if (memoriza && maquina == null) {
+            erros.println(String.format("Memorização: %d acertos, %d falhas.",
+                    memorizador.getAcertos(contexto), memorizador.getFalhas(contexto)));
+            erros.print(memorizador.relatorio(contexto));
+        }
+
+        return 0;
+    }
+
+    private EnquantoParser analisador(String arq, byte[] fonte, ANTLRErrorListener erros) throws IOException {
+        final EnquantoParser parser = analisadores.get();
+        final EnquantoLexer lexer = (EnquantoLexer) parser.getTokenStream().getTokenSource();
+
+        lexer.setInputStream(Analise.caracteres(arq, fonte));
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(erros);
+        parser.setTokenStream(new CommonTokenStream(lexer));
+
+        return parser;
+    }
+
+    // as mensagens no formato do ConsoleErrorListener, para o cliente
+    private static ANTLRErrorListener erros(final PrintStream erros) {
+        return new BaseErrorListener() {
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer, Object simbolo, int linha, int coluna,
+                    String mensagem, RecognitionException e) {
+                erros.println(String.format("line %d:%d %s", linha, coluna, mensagem));
+            }
+        };
+    }
+
+    /**
+     * Envia cada escrita como um quadro do tipo dado.
+     */
+    private static final class Quadros extends OutputStream {
+        private final DataOutputStream resposta;
+        private final byte tipo;
+
+        Quadros(DataOutputStream resposta, byte tipo) {
+            this.resposta = resposta;
+            this.tipo = tipo;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int inicio, int tamanho) throws IOException {
+            if (tamanho == 0)
+                return;
+
+            resposta.writeByte(tipo);
+            resposta.writeInt(tamanho);
+            resposta.write(b, inicio, tamanho);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            resposta.flush();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package plp.enquanto;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Executa vários programas numa só JVM, um depois do outro, como o
+ * Principal executaria cada um. É o treino do arquivo de CDS do perfil cds
+ * do pom.xml: o arquivo guarda as classes que estes programas carregam.
+ *
+ * Uso: Treino [opções do Principal] programa.while...
+ */
+public class Treino {
+
+    public static void main(String... args) throws IOException {
+        final List<String> opcoes = new ArrayList<String>();
+        final List<String> programas = new ArrayList<String>();
+
+        for (String arg : args) {
+            if (arg.endsWith(".while"))
+                programas.add(arg);
+            else
+                opcoes.add(arg);
+        }
+
+        for (String programa : programas) {
+            final List<String> execucao = new ArrayList<String>(opcoes);
+
+            execucao.add(programa);
+            Principal.main(execucao.toArray(new String[execucao.size()]));
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package plp.enquanto;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import plp.enquanto.linguagem.Contexto;
+import plp.enquanto.linguagem.Entrada;
+import plp.enquanto.linguagem.Especializador;
+import plp.enquanto.linguagem.Linguagem.Programa;
+import plp.enquanto.linguagem.Memorizador;
+import plp.enquanto.linguagem.Saida;
+
+/**
+ * Mede quantas execuções por segundo um mesmo Programa sustenta quando
+ * executado em paralelo, cada execução com seu próprio Contexto. Varia o
+ * número de threads de 1 até o número de processadores; com --virtuais,
+ * cada execução roda numa thread virtual (Java 21 ou mais recente).
+ *
+ * Uso: Vazao [--execucoes N] [--threads T] [--virtuais] [--entrada ARQ]
+ *            [--especializa] [--memoriza] programa.while
+ */
+public class Vazao {
+
+    private static final OutputStream DESCARTE = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private static ExecutorService virtuais() {
+        try {
+            final Method fabrica = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+
+            return (ExecutorService) fabrica.invoke(null);
+        } catch (NoSuchMethodException e) {
+            System.err.println("Threads virtuais exigem Java 21 ou mais recente.");
+            System.exit(1);
+
+            throw new IllegalStateException(e);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void execute(Programa programa, byte[] entrada) {
+        final Saida saida = new Saida(DESCARTE, false, Saida.LIMITE);
+        final Contexto contexto = new Contexto(programa, new Entrada(new ByteArrayInputStream(entrada)), saida);
+
+        programa.execute(contexto);
+        saida.descarregue();
+    }
+
+    // execuções por segundo de n execuções repartidas pelo executor
+    private static double meca(ExecutorService executor, final Programa programa,
+                               final byte[] entrada, int n) throws InterruptedException, ExecutionException {
+        final List<Future<?>> execucoes = new ArrayList<Future<?>>(n);
+        final long inicio = System.nanoTime();
+
+        for (int i = 0; i < n; i++) {
+            execucoes.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    execute(programa, entrada);
+                }
+            }));
+        }
+
+        for (Future<?> execucao : execucoes) {
+            execucao.get();
+        }
+
+        final long fim = System.nanoTime();
+
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        return n * 1e9 / (fim - inicio);
+    }
+
+    public static void main(String... args) throws IOException, InterruptedException, ExecutionException {
+        String arq = null;
+        String entrada = null;
+        int execucoes = 200;
+        int threads = 0;
+        boolean virtuais = false;
+        boolean especializa = false;
+        boolean memoriza = false;
+
+        for (int i = 0; i < args.length; i++) {
+            if ("--execucoes".equals(args[i]))
+                execucoes = Integer.parseInt(args[++i]);
+            else if ("--threads".equals(args[i]))
+                threads = Integer.parseInt(args[++i]);
+            else if ("--virtuais".equals(args[i]))
+                virtuais = true;
+            else if ("--entrada".equals(args[i]))
+                entrada = args[++i];
+            else if ("--especializa".equals(args[i]))
+                especializa = true;
+            else if ("--memoriza".equals(args[i]))
+                memoriza = true;
+            else
+                arq = args[i];
+        }
+
+        Programa programa = Principal.construa(arq, null);
+
+        if (memoriza)
+            programa = new Memorizador().transforme(programa);
+        if (especializa)
+            programa = new Especializador().transforme(programa);
+
+        final byte[] bytes = entrada == null ? new byte[0] : Files.readAllBytes(Paths.get(entrada));
+        final int processadores = Runtime.getRuntime().availableProcessors();
+
+        // aquecimento: compila os caminhos quentes antes de medir
+        meca(Executors.newFixedThreadPool(processadores), programa, bytes, execucoes);
+
+        System.out.println(String.format("%d processadores, %d execuções por medida.", processadores, execucoes));
+
+        if (virtuais) {
+            final double vazao = meca(virtuais(), programa, bytes, execucoes);
+
+            System.out.println(String.format("virtuais: %.1f execuções/s", vazao));
+            return;
+        }
+
+        final List<Integer> contagens = new ArrayList<Integer>();
+
+        if (threads > 0) {
+            contagens.add(threads);
+        } else {
+            for (int t = 1; t < processadores; t *= 2) {
+                contagens.add(t);
+            }
+
+            contagens.add(processadores);
+        }
+
+        double base = 0;
+
+        for (int t : contagens) {
+            final double vazao = meca(Executors.newFixedThreadPool(t), programa, bytes, execucoes);
+
+            if (base == 0)
+                base = vazao;
+
+            System.out.println(String.format("%3d threads: %10.1f execuções/s  (%.2fx)", t, vazao, vazao / base));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package plp.enquanto.linguagem;
+
+/**
+ * Operações inteiras que não são um único operador do Java: a potência,
+ * calculada por quadrados sucessivos, e as versões verificadas das
+ * operações, usadas pelo Verificador, que lançam ArithmeticException em
+ * vez de dar a volta no int.
+ *
+ * Como a multiplicação, a potência comum dá a volta no int quando o
+ * resultado não cabe. Com expoente negativo o resultado é truncado, como
+ * na divisão: só 1 e -1 têm potências diferentes de zero, e 0 é divisão
+ * por zero.
+ */
+public final class Aritmetica {
+    private Aritmetica() {
+    }
+
+    public static int potencia(int base, int expoente) {
+        if (expoente < 0)
+            return inversa(base, expoente);
+
+        int resultado = 1;
+
+        while (expoente != 0) {
+            if ((expoente & 1) != 0)
+                resultado *= base;
+
+            expoente >>= 1;
+
+            if (expoente != 0)
+                base *= base;
+        }
+
+        return resultado;
+    }
+
+    // quando sobra expoente, o quadrado da base entra no resultado, e se
+    // ele estoura o resultado também estoura
+    public static int potenciaExata(int base, int expoente) {
+        if (expoente < 0)
+            return inversa(base, expoente);
+
+        final int b = base;
+        final int e = expoente;
+        long resultado = 1;
+        long fator = base;
+
+        while (expoente != 0) {
+            if ((expoente & 1) != 0) {
+                resultado *= fator;
+
+                if ((int) resultado != resultado)
+                    throw estouro(b, "^", e);
+            }
+
+            expoente >>= 1;
+
+            if (expoente != 0) {
+                fator *= fator;
+
+                if ((int) fator != fator)
+                    throw estouro(b, "^", e);
+            }
+        }
+
+        return (int) resultado;
+    }
+
+    private static int inversa(int base, int expoente) {
+        if (base == 1 || base == -1)
+            return (expoente & 1) == 0 ? 1 : base;
+
+        return 1 / base;
+    }
+
+    public static int some(int a, int b) {
+        final int r = a + b;
+
+        // estoura quando os operandos têm o mesmo sinal e o resultado não
+        if (((a ^ r) & (b ^ r)) < 0)
+            throw estouro(a, "+", b);
+
+        return r;
+    }
+
+    public static int subtraia(int a, int b) {
+        final int r = a - b;
+
+        if (((a ^ b) & (a ^ r)) < 0)
+            throw estouro(a, "-", b);
+
+        return r;
+    }
+
+    public static int multiplique(int a, int b) {
+        final long r = (long) a * b;
+
+        if ((int) r != r)
+            throw estouro(a, "*", b);
+
+        return (int) r;
+    }
+
+    public static int divida(int a, int b) {
+        if (a == Integer.MIN_VALUE && b == -1)
+            throw estouro(a, "/", b);
+
+        return a / b;
+    }
+
+    public static int negue(int a) {
+        if (a == Integer.MIN_VALUE)
+            throw new ArithmeticException(String.format("Estouro de inteiro em -(%d).", a));
+
+        return -a;
+    }
+
+    private static ArithmeticException estouro(int a, String op, int b) {
+        return new ArithmeticException(String.format("Estouro de inteiro em %d %s %d.", a, op, b));
+    }
+}
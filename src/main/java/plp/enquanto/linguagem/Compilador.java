@@ -0,0 +1,729 @@
+package plp.enquanto.linguagem;
+
+import static org.objectweb.asm.Opcodes.*;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+
+import plp.enquanto.linguagem.Linguagem.*;
+
+/**
+ * Gera uma classe da JVM equivalente ao programa, que roda sem o
+ * interpretador. Variáveis globais viram locais de {@code main}, ou campos
+ * estáticos quando alguma função as lê; cada função vira um método estático.
+ *
+ * Expressões e condições deixam seu valor (inteiro, ou 0/1) na pilha de
+ * operandos; comandos não deixam nada.
+ */
+public class Compilador implements Visitor<Void> {
+    private static final String ENTRADA = "$entrada";
+
+    private final String classe;
+    private final ClassWriter cw;
+
+    private final Map<Funcao, String> metodos = new HashMap<Funcao, String>();
+    private final Set<String> campos = new HashSet<String>();
+    private boolean usaLeia;
+    private boolean usaPotencia;
+    private boolean usaPotenciaExata;
+    private boolean usaDivisaoExata;
+
+    private MethodVisitor mv;
+    private Funcao funcaoAtual;
+    private int proximoLocal;
+
+    public Compilador(String classe) {
+        this.classe = classe;
+        this.cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    }
+
+    public byte[] compile(Programa programa) {
+        programa.accept(this);
+
+        return cw.toByteArray();
+    }
+
+    public String getClasse() {
+        return classe;
+    }
+
+    public static void salve(String classe, byte[] bytecode, String arquivo) throws IOException {
+        final OutputStream out = new FileOutputStream(arquivo);
+
+        try {
+            if (arquivo.endsWith(".class")) {
+                out.write(bytecode);
+                return;
+            }
+
+            final Manifest manifest = new Manifest();
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, classe);
+
+            final JarOutputStream jar = new JarOutputStream(out, manifest);
+            jar.putNextEntry(new JarEntry(classe + ".class"));
+            jar.write(bytecode);
+            jar.closeEntry();
+            jar.finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    public Void visitPrograma(Programa programa) {
+        cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, classe, null, "java/lang/Object", null);
+
+        for (Instrucao instrucao : programa.comandos) {
+            if (instrucao instanceof Funcao) {
+                final Funcao funcao = (Funcao) instrucao;
+                String nome = funcao.id;
+
+                while (metodos.containsValue(nome)) {
+                    nome = nome + "$";
+                }
+
+                metodos.put(funcao, nome);
+            }
+        }
+
+        // as funções vêm antes de main para que se saiba quais globais elas
+        // leem, e que portanto precisam ser campos
+        for (Instrucao instrucao : programa.comandos) {
+            if (instrucao instanceof Funcao) {
+                instrucao.accept(this);
+            }
+        }
+
+        final Ambiente ambiente = programa.ambiente;
+        final String[] nomes = new String[ambiente.slots.size()];
+
+        for (Map.Entry<String, Integer> slot : ambiente.slots.entrySet()) {
+            nomes[slot.getValue()] = slot.getKey();
+        }
+
+        mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "main", "([Ljava/lang/String;)V", null, null);
+        mv.visitCode();
+        funcaoAtual = null;
+        proximoLocal = 1 + nomes.length;
+
+        for (int slot = 0; slot < nomes.length; slot++) {
+            if (!campos.contains(nomes[slot])) {
+                mv.visitInsn(ICONST_0);
+                mv.visitVarInsn(ISTORE, 1 + slot);
+            }
+        }
+
+        for (Instrucao instrucao : programa.comandos) {
+            if (instrucao instanceof Comando) {
+                instrucao.accept(this);
+            }
+        }
+
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        for (String campo : campos) {
+            cw.visitField(ACC_PRIVATE | ACC_STATIC, campo, "I", null, null).visitEnd();
+        }
+
+        if (usaPotencia)
+            potencia("$potencia", false);
+        if (usaPotenciaExata)
+            potencia("$potenciaExata", true);
+        if (usaDivisaoExata)
+            divisaoExata();
+
+        if (usaLeia) {
+            cw.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, ENTRADA, "Ljava/util/Scanner;", null, null).visitEnd();
+
+            mv = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+            mv.visitCode();
+            mv.visitTypeInsn(NEW, "java/util/Scanner");
+            mv.visitInsn(DUP);
+            mv.visitFieldInsn(GETSTATIC, "java/lang/System", "in", "Ljava/io/InputStream;");
+            mv.visitMethodInsn(INVOKESPECIAL, "java/util/Scanner", "<init>", "(Ljava/io/InputStream;)V", false);
+            mv.visitFieldInsn(PUTSTATIC, classe, ENTRADA, "Ljava/util/Scanner;");
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        cw.visitEnd();
+
+        return null;
+    }
+
+    // a mesma potência da Aritmetica: por quadrados sucessivos, truncada
+    // para expoentes negativos, e com multiplyExact quando verificada
+    private void potencia(String nome, boolean exata) {
+        final Label laco = new Label();
+        final Label unitaria = new Label();
+        final Label impar = new Label();
+        final Label teste = new Label();
+        final Label par = new Label();
+        final Label fim = new Label();
+
+        mv = cw.visitMethod(ACC_PRIVATE | ACC_STATIC, nome, "(II)I", null, null);
+        mv.visitCode();
+
+        mv.visitVarInsn(ILOAD, 1);
+        mv.visitJumpInsn(IFGE, laco);
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitInsn(ICONST_1);
+        mv.visitJumpInsn(IF_ICMPEQ, unitaria);
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitInsn(ICONST_M1);
+        mv.visitJumpInsn(IF_ICMPEQ, unitaria);
+        mv.visitInsn(ICONST_1);
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitInsn(IDIV);
+        mv.visitInsn(IRETURN);
+
+        mv.visitLabel(unitaria);
+        mv.visitVarInsn(ILOAD, 1);
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(IAND);
+        mv.visitJumpInsn(IFNE, impar);
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(IRETURN);
+        mv.visitLabel(impar);
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitInsn(IRETURN);
+
+        mv.visitLabel(laco);
+        mv.visitInsn(ICONST_1);
+        mv.visitVarInsn(ISTORE, 2);
+        mv.visitLabel(teste);
+        mv.visitVarInsn(ILOAD, 1);
+        mv.visitJumpInsn(IFEQ, fim);
+        mv.visitVarInsn(ILOAD, 1);
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(IAND);
+        mv.visitJumpInsn(IFEQ, par);
+        mv.visitVarInsn(ILOAD, 2);
+        mv.visitVarInsn(ILOAD, 0);
+        multiplica(exata);
+        mv.visitVarInsn(ISTORE, 2);
+        mv.visitLabel(par);
+        mv.visitVarInsn(ILOAD, 1);
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(ISHR);
+        mv.visitVarInsn(ISTORE, 1);
+        mv.visitVarInsn(ILOAD, 1);
+        mv.visitJumpInsn(IFEQ, fim);
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitVarInsn(ILOAD, 0);
+        multiplica(exata);
+        mv.visitVarInsn(ISTORE, 0);
+        mv.visitJumpInsn(GOTO, teste);
+
+        mv.visitLabel(fim);
+        mv.visitVarInsn(ILOAD, 2);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void multiplica(boolean exata) {
+        if (exata)
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "multiplyExact", "(II)I", false);
+        else
+            mv.visitInsn(IMUL);
+    }
+
+    // só MIN_VALUE / -1 estoura
+    private void divisaoExata() {
+        final Label divide = new Label();
+
+        mv = cw.visitMethod(ACC_PRIVATE | ACC_STATIC, "$divisaoExata", "(II)I", null, null);
+        mv.visitCode();
+
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitLdcInsn(Integer.MIN_VALUE);
+        mv.visitJumpInsn(IF_ICMPNE, divide);
+        mv.visitVarInsn(ILOAD, 1);
+        mv.visitInsn(ICONST_M1);
+        mv.visitJumpInsn(IF_ICMPNE, divide);
+        mv.visitTypeInsn(NEW, "java/lang/ArithmeticException");
+        mv.visitInsn(DUP);
+        mv.visitLdcInsn("integer overflow");
+        mv.visitMethodInsn(INVOKESPECIAL, "java/lang/ArithmeticException", "<init>", "(Ljava/lang/String;)V", false);
+        mv.visitInsn(ATHROW);
+
+        mv.visitLabel(divide);
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitVarInsn(ILOAD, 1);
+        mv.visitInsn(IDIV);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    @Override
+    public Void visitFuncao(Funcao funcao) {
+        mv = cw.visitMethod(ACC_PRIVATE | ACC_STATIC, metodos.get(funcao), descritor(funcao), null, null);
+        mv.visitCode();
+        funcaoAtual = funcao;
+
+        funcao.retorno.accept(this);
+
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        return null;
+    }
+
+    private static String descritor(Funcao funcao) {
+        final StringBuilder desc = new StringBuilder("(");
+
+        for (int i = 0; i < funcao.args.size(); i++) {
+            desc.append('I');
+        }
+
+        return desc.append(")I").toString();
+    }
+
+    private boolean global(Ambiente ambiente) {
+        return ambiente.legado == ambiente;
+    }
+
+    private void carrega(Ambiente ambiente, int slot, String id) {
+        if (!global(ambiente)) {
+            mv.visitVarInsn(ILOAD, slot);
+        } else if (funcaoAtual != null) {
+            campos.add(id);
+            mv.visitFieldInsn(GETSTATIC, classe, id, "I");
+        } else if (campos.contains(id)) {
+            mv.visitFieldInsn(GETSTATIC, classe, id, "I");
+        } else {
+            mv.visitVarInsn(ILOAD, 1 + slot);
+        }
+    }
+
+    private void guarda(Ambiente ambiente, int slot, String id) {
+        if (campos.contains(id)) {
+            mv.visitFieldInsn(PUTSTATIC, classe, id, "I");
+        } else {
+            mv.visitVarInsn(ISTORE, 1 + slot);
+        }
+    }
+
+    private void constante(int valor) {
+        if (valor >= -1 && valor <= 5)
+            mv.visitInsn(ICONST_0 + valor);
+        else if (valor >= Byte.MIN_VALUE && valor <= Byte.MAX_VALUE)
+            mv.visitIntInsn(BIPUSH, valor);
+        else if (valor >= Short.MIN_VALUE && valor <= Short.MAX_VALUE)
+            mv.visitIntInsn(SIPUSH, valor);
+        else
+            mv.visitLdcInsn(valor);
+    }
+
+    private void imprime(String descritor) {
+        mv.visitMethodInsn(INVOKEVIRTUAL, "java/io/PrintStream", "println", descritor, false);
+    }
+
+    @Override
+    public Void visitPara(Para para) {
+        final int contador = proximoLocal++;
+        final Label teste = new Label();
+        final Label fim = new Label();
+
+        para.de.accept(this);
+        guarda(para.id.ambiente, para.id.slot, para.id.id);
+        carrega(para.id.ambiente, para.id.slot, para.id.id);
+        mv.visitVarInsn(ISTORE, contador);
+
+        mv.visitLabel(teste);
+        mv.visitVarInsn(ILOAD, contador);
+        para.ate.accept(this);
+        mv.visitJumpInsn(IF_ICMPGT, fim);
+
+        para.faca.accept(this);
+
+        mv.visitVarInsn(ILOAD, contador);
+        para.passo.accept(this);
+        mv.visitInsn(IADD);
+        mv.visitInsn(DUP);
+        mv.visitVarInsn(ISTORE, contador);
+        guarda(para.id.ambiente, para.id.slot, para.id.id);
+        mv.visitJumpInsn(GOTO, teste);
+
+        mv.visitLabel(fim);
+        proximoLocal--;
+
+        return null;
+    }
+
+    @Override
+    public Void visitSenaoSe(SenaoSe senaoSe) {
+        senaoSe.entao.accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visitSe(Se se) {
+        final Label fim = new Label();
+        final List<SenaoSe> ramos = new ArrayList<SenaoSe>();
+
+        ramos.add(se);
+        ramos.addAll(se.listaSenaoSe);
+
+        for (SenaoSe ramo : ramos) {
+            final Label proximo = new Label();
+
+            ramo.condicao.accept(this);
+            mv.visitJumpInsn(IFEQ, proximo);
+            ramo.entao.accept(this);
+            mv.visitJumpInsn(GOTO, fim);
+            mv.visitLabel(proximo);
+        }
+
+        se.senao.accept(this);
+        mv.visitLabel(fim);
+
+        return null;
+    }
+
+    @Override
+    public Void visitSkip(Skip skip) {
+        return null;
+    }
+
+    @Override
+    public Void visitEscreva(Escreva escreva) {
+        mv.visitFieldInsn(GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
+        escreva.exp.accept(this);
+        imprime("(I)V");
+
+        return null;
+    }
+
+    @Override
+    public Void visitEscolha(Escolha escolha) {
+        final Label fim = new Label();
+        final Label outro = new Label();
+
+        final SortedMap<Integer, Comando> casos = new TreeMap<Integer, Comando>();
+
+        for (int i = 0; i < escolha.chaves.length; i++) {
+            casos.put(escolha.chaves[i], escolha.comandos[i]);
+        }
+
+        escolha.padrao.accept(this);
+
+        if (casos.isEmpty()) {
+            mv.visitInsn(POP);
+        } else {
+            final int[] chaves = new int[casos.size()];
+            final Label[] rotulos = new Label[casos.size()];
+            int i = 0;
+
+            for (Integer chave : casos.keySet()) {
+                chaves[i] = chave;
+                rotulos[i] = new Label();
+                i++;
+            }
+
+            final int min = chaves[0];
+            final int max = chaves[chaves.length - 1];
+
+            // mesma heurística do javac para escolher entre as duas instruções
+            final long custoTabela = 4 + ((long) max - min + 1) + 3 * 3;
+            final long custoBusca = 3 + 2 * chaves.length + 3 * chaves.length;
+
+            if (custoTabela <= custoBusca) {
+                final Label[] tabela = new Label[max - min + 1];
+
+                Arrays.fill(tabela, outro);
+                for (int j = 0; j < chaves.length; j++) {
+                    tabela[chaves[j] - min] = rotulos[j];
+                }
+
+                mv.visitTableSwitchInsn(min, max, outro, tabela);
+            } else {
+                mv.visitLookupSwitchInsn(outro, chaves, rotulos);
+            }
+
+            i = 0;
+            for (Comando comando : casos.values()) {
+                mv.visitLabel(rotulos[i++]);
+                comando.accept(this);
+                mv.visitJumpInsn(GOTO, fim);
+            }
+        }
+
+        mv.visitLabel(outro);
+        escolha.outro.accept(this);
+        mv.visitLabel(fim);
+
+        return null;
+    }
+
+    @Override
+    public Void visitEnquanto(Enquanto enquanto) {
+        final Label teste = new Label();
+        final Label fim = new Label();
+
+        mv.visitLabel(teste);
+        enquanto.condicao.accept(this);
+        mv.visitJumpInsn(IFEQ, fim);
+        enquanto.faca.accept(this);
+        mv.visitJumpInsn(GOTO, teste);
+        mv.visitLabel(fim);
+
+        return null;
+    }
+
+    @Override
+    public Void visitExiba(Exiba exiba) {
+        mv.visitFieldInsn(GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
+        mv.visitLdcInsn(exiba.texto);
+        imprime("(Ljava/lang/String;)V");
+
+        return null;
+    }
+
+    @Override
+    public Void visitBloco(Bloco bloco) {
+        for (Comando comando : bloco.comandos) {
+            comando.accept(this);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitChamadaFuncao(ChamadaFuncao chamada) {
+        for (Expressao param : chamada.params) {
+            param.accept(this);
+        }
+
+        mv.visitMethodInsn(INVOKESTATIC, classe, metodos.get(chamada.funcao), descritor(chamada.funcao), false);
+
+        return null;
+    }
+
+    @Override
+    public Void visitAtribuicao(Atribuicao atribuicao) {
+        atribuicao.exp.accept(this);
+        guarda(atribuicao.ambiente, atribuicao.slot, atribuicao.id);
+
+        return null;
+    }
+
+    @Override
+    public Void visitInteiro(Inteiro inteiro) {
+        constante(inteiro.valor);
+
+        return null;
+    }
+
+    @Override
+    public Void visitId(Id id) {
+        carrega(id.ambiente, id.slot, id.id);
+
+        return null;
+    }
+
+    @Override
+    public Void visitLeia(Leia leia) {
+        usaLeia = true;
+
+        mv.visitFieldInsn(GETSTATIC, classe, ENTRADA, "Ljava/util/Scanner;");
+        mv.visitMethodInsn(INVOKEVIRTUAL, "java/util/Scanner", "nextInt", "()I", false);
+
+        return null;
+    }
+
+    @Override
+    public Void visitExpNeg(ExpNeg expNeg) {
+        expNeg.exp.accept(this);
+
+        if (expNeg instanceof Verificador.Verificada)
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "negateExact", "(I)I", false);
+        else
+            mv.visitInsn(INEG);
+
+        return null;
+    }
+
+    // as operações verificadas usam os métodos exatos de Math
+    private Void binaria(ExpBin exp, int opcode, String exata) {
+        exp.esq.accept(this);
+        exp.dir.accept(this);
+
+        if (exp instanceof Verificador.Verificada)
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/Math", exata, "(II)I", false);
+        else
+            mv.visitInsn(opcode);
+
+        return null;
+    }
+
+    @Override
+    public Void visitExpSoma(ExpSoma expSoma) {
+        return binaria(expSoma, IADD, "addExact");
+    }
+
+    @Override
+    public Void visitExpSub(ExpSub expSub) {
+        return binaria(expSub, ISUB, "subtractExact");
+    }
+
+    @Override
+    public Void visitExpMul(ExpMul expMul) {
+        return binaria(expMul, IMUL, "multiplyExact");
+    }
+
+    // como na ExpDiv, o divisor é avaliado primeiro
+    @Override
+    public Void visitExpDiv(ExpDiv expDiv) {
+        expDiv.dir.accept(this);
+        expDiv.esq.accept(this);
+        mv.visitInsn(SWAP);
+
+        if (expDiv instanceof Verificador.Verificada) {
+            usaDivisaoExata = true;
+            mv.visitMethodInsn(INVOKESTATIC, classe, "$divisaoExata", "(II)I", false);
+        } else {
+            mv.visitInsn(IDIV);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitExpPot(ExpPot expPot) {
+        final boolean exata = expPot instanceof Verificador.Verificada;
+
+        expPot.esq.accept(this);
+        expPot.dir.accept(this);
+
+        if (exata)
+            usaPotenciaExata = true;
+        else
+            usaPotencia = true;
+
+        mv.visitMethodInsn(INVOKESTATIC, classe, exata ? "$potenciaExata" : "$potencia", "(II)I", false);
+
+        return null;
+    }
+
+    @Override
+    public Void visitBooleano(Booleano booleano) {
+        mv.visitInsn(booleano.valor ? ICONST_1 : ICONST_0);
+
+        return null;
+    }
+
+    private Void relacional(ExpRel exp, int opcode) {
+        final Label verdadeiro = new Label();
+        final Label fim = new Label();
+
+        exp.esq.accept(this);
+        exp.dir.accept(this);
+        mv.visitJumpInsn(opcode, verdadeiro);
+        mv.visitInsn(ICONST_0);
+        mv.visitJumpInsn(GOTO, fim);
+        mv.visitLabel(verdadeiro);
+        mv.visitInsn(ICONST_1);
+        mv.visitLabel(fim);
+
+        return null;
+    }
+
+    @Override
+    public Void visitExpDesigual(ExpDesigual expDesigual) {
+        return relacional(expDesigual, IF_ICMPNE);
+    }
+
+    @Override
+    public Void visitExpIgual(ExpIgual expIgual) {
+        return relacional(expIgual, IF_ICMPEQ);
+    }
+
+    @Override
+    public Void visitExpMaior(ExpMaior expMaior) {
+        return relacional(expMaior, IF_ICMPGT);
+    }
+
+    @Override
+    public Void visitExpMaiorIgual(ExpMaiorIgual expMaiorIgual) {
+        return relacional(expMaiorIgual, IF_ICMPGE);
+    }
+
+    @Override
+    public Void visitExpMenor(ExpMenor expMenor) {
+        return relacional(expMenor, IF_ICMPLT);
+    }
+
+    @Override
+    public Void visitExpMenorIgual(ExpMenorIgual expMenorIgual) {
+        return relacional(expMenorIgual, IF_ICMPLE);
+    }
+
+    @Override
+    public Void visitNaoLogico(NaoLogico naoLogico) {
+        naoLogico.b.accept(this);
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(IXOR);
+
+        return null;
+    }
+
+    @Override
+    public Void visitELogico(ELogico eLogico) {
+        final Label falso = new Label();
+        final Label fim = new Label();
+
+        eLogico.esq.accept(this);
+        mv.visitJumpInsn(IFEQ, falso);
+        eLogico.dir.accept(this);
+        mv.visitJumpInsn(GOTO, fim);
+        mv.visitLabel(falso);
+        mv.visitInsn(ICONST_0);
+        mv.visitLabel(fim);
+
+        return null;
+    }
+
+    @Override
+    public Void visitOuLogico(OuLogico ouLogico) {
+        final Label verdadeiro = new Label();
+        final Label fim = new Label();
+
+        ouLogico.esq.accept(this);
+        mv.visitJumpInsn(IFNE, verdadeiro);
+        ouLogico.dir.accept(this);
+        mv.visitJumpInsn(GOTO, fim);
+        mv.visitLabel(verdadeiro);
+        mv.visitInsn(ICONST_1);
+        mv.visitLabel(fim);
+
+        return null;
+    }
+
+    @Override
+    public Void visitXorLogico(XorLogico xorLogico) {
+        xorLogico.esq.accept(this);
+        xorLogico.dir.accept(this);
+        mv.visitInsn(IXOR);
+
+        return null;
+    }
+}
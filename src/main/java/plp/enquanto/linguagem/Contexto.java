@@ -0,0 +1,82 @@
+package plp.enquanto.linguagem;
+
+import java.util.Arrays;
+
+import plp.enquanto.linguagem.Linguagem.Programa;
+
+/**
+ * Estado de uma execução: as globais, a pilha de quadros das funções, a
+ * entrada de leia, a saída de escreva e exiba, as caches de memorização e
+ * as medidas do perfil.
+ * A árvore do Programa não guarda nada disso, de modo que o mesmo Programa
+ * pode ser executado ao mesmo tempo em várias threads, cada uma com seu
+ * contexto. Um contexto só deve ser usado por uma thread de cada vez.
+ */
+public final class Contexto {
+    int[] globais;
+
+    // quadros de ativação das chamadas em curso: base aponta o quadro da
+    // chamada corrente e topo o primeiro slot livre
+    int[] pilha = new int[64];
+    int base;
+    int topo;
+
+    final Entrada entrada;
+    final Saida saida;
+
+    Memorizador.Cache[] caches = new Memorizador.Cache[0];
+
+    // contagens do perfil, criadas na primeira medida
+    Perfilador.Medidas medidas;
+
+    // contadores publicados pela Telemetria; os comandos executados são
+    // comandos + iteracoes, pois cada iteração executa o corpo do laço
+    long comandos;
+    long iteracoes;
+    long chamadas;
+
+    public Contexto(Programa programa, Entrada entrada, Saida saida) {
+        this.globais = new int[Math.max(16, programa.ambiente.slots.size())];
+        this.entrada = entrada;
+        this.saida = saida;
+    }
+
+    public Entrada getEntrada() {
+        return entrada;
+    }
+
+    public Saida getSaida() {
+        return saida;
+    }
+
+    // globais declaradas depois da criação do contexto, quando o mesmo
+    // ambiente recebe novos trechos de programa
+    void prepare(Programa programa) {
+        final int tamanho = programa.ambiente.slots.size();
+
+        if (tamanho > globais.length) {
+            globais = Arrays.copyOf(globais, Math.max(tamanho, globais.length * 2));
+        }
+    }
+
+    // empilha o argumento na posição seguinte do quadro em construção
+    void empilhe(int valor) {
+        if (topo == pilha.length) {
+            pilha = Arrays.copyOf(pilha, pilha.length * 2);
+        }
+
+        pilha[topo++] = valor;
+    }
+
+    Memorizador.Cache cache(int indice) {
+        return indice < caches.length ? caches[indice] : null;
+    }
+
+    void guarde(int indice, Memorizador.Cache cache) {
+        if (indice >= caches.length) {
+            caches = Arrays.copyOf(caches, indice + 1);
+        }
+
+        caches[indice] = cache;
+    }
+}
@@ -0,0 +1,130 @@
+package plp.enquanto.linguagem;
+
+import java.util.*;
+
+import plp.enquanto.linguagem.Linguagem.*;
+
+/**
+ * O que um trecho da árvore lê e escreve: as globais lidas, inclusive pelas
+ * funções chamadas, direta ou indiretamente; se a avaliação usa leia; e as
+ * globais atribuídas por um comando.
+ *
+ * O resumo de cada função só considera o próprio corpo; as funções que ela
+ * chama são percorridas a cada consulta, o que dá o resultado certo também
+ * para funções recursivas.
+ */
+final class Dependencias {
+    private final Map<Funcao, Leituras> funcoes = new HashMap<Funcao, Leituras>();
+
+    static final class Leituras {
+        final Set<Integer> globais = new TreeSet<Integer>();
+        final Set<Funcao> chamadas = new LinkedHashSet<Funcao>();
+        boolean leia;
+        // chamada de função não declarada: não se sabe o que ela lê
+        boolean desconhecida;
+
+        // a avaliação não tem efeito e só depende das globais lidas
+        boolean pura() {
+            return !leia && !desconhecida;
+        }
+    }
+
+    Leituras leituras(No no) {
+        final Leituras leituras = diretas(no);
+        final Deque<Funcao> pendentes = new ArrayDeque<Funcao>(leituras.chamadas);
+        final Set<Funcao> vistas = new HashSet<Funcao>(leituras.chamadas);
+
+        while (!pendentes.isEmpty()) {
+            final Leituras funcao = diretas(pendentes.pop());
+
+            leituras.globais.addAll(funcao.globais);
+            leituras.leia |= funcao.leia;
+            leituras.desconhecida |= funcao.desconhecida;
+
+            for (Funcao chamada : funcao.chamadas) {
+                if (vistas.add(chamada))
+                    pendentes.push(chamada);
+            }
+        }
+
+        return leituras;
+    }
+
+    private Leituras diretas(Funcao funcao) {
+        Leituras leituras = funcoes.get(funcao);
+
+        if (leituras == null) {
+            leituras = diretas(funcao.retorno);
+            funcoes.put(funcao, leituras);
+        }
+
+        return leituras;
+    }
+
+    private static Leituras diretas(No no) {
+        final Leituras leituras = new Leituras();
+
+        no.accept(new Transformador() {
+            @Override
+            public No visitId(Id id) {
+                if (id.global)
+                    leituras.globais.add(id.slot);
+
+                return id;
+            }
+
+            @Override
+            public No visitLeia(Leia leia) {
+                leituras.leia = true;
+
+                return leia;
+            }
+
+            @Override
+            public No visitChamadaFuncao(ChamadaFuncao chamada) {
+                super.visitChamadaFuncao(chamada);
+
+                if (chamada.funcao == null)
+                    leituras.desconhecida = true;
+                else
+                    leituras.chamadas.add(chamada.funcao);
+
+                return chamada;
+            }
+        });
+
+        return leituras;
+    }
+
+    // slots das globais atribuídas pelo comando, inclusive contadores de
+    // laços internos, ou null se ele atribuir alguma variável local
+    static Set<Integer> escritas(Comando comando) {
+        final Set<Integer> globais = new TreeSet<Integer>();
+        final boolean[] locais = new boolean[1];
+
+        comando.accept(new Transformador() {
+            private void escrita(boolean global, int slot) {
+                if (global)
+                    globais.add(slot);
+                else
+                    locais[0] = true;
+            }
+
+            @Override
+            public No visitAtribuicao(Atribuicao atribuicao) {
+                escrita(atribuicao.global, atribuicao.slot);
+
+                return super.visitAtribuicao(atribuicao);
+            }
+
+            @Override
+            public No visitPara(Para para) {
+                escrita(para.id.global, para.id.slot);
+
+                return super.visitPara(para);
+            }
+        });
+
+        return locais[0] ? null : globais;
+    }
+}
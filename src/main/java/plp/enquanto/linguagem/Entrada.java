@@ -0,0 +1,158 @@
+package plp.enquanto.linguagem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+
+/**
+ * Origem dos valores de leia. Os inteiros são lidos byte a byte de um
+ * buffer, sem expressões regulares nem Strings; os erros são os mesmos do
+ * Scanner.nextInt(). A fonte é um InputStream ou um arquivo mapeado em
+ * memória, percorrido em janelas para suportar arquivos de qualquer tamanho.
+ */
+public class Entrada {
+    private static final int TAMANHO = 64 * 1024;
+    private static final long JANELA = 256L * 1024 * 1024;
+
+    private InputStream fonte;
+
+    private FileChannel canal;
+    private MappedByteBuffer mapa;
+    private long mapeado;
+
+    private final byte[] buffer = new byte[TAMANHO];
+    private int posicao;
+    private int limite;
+
+    public Entrada(InputStream fonte) {
+        this.fonte = fonte;
+    }
+
+    public void setFonte(InputStream fonte) {
+        feche();
+
+        this.fonte = fonte;
+        this.posicao = 0;
+        this.limite = 0;
+    }
+
+    public void mapeie(String arquivo) throws IOException {
+        feche();
+
+        this.canal = FileChannel.open(Paths.get(arquivo), StandardOpenOption.READ);
+        this.mapa = null;
+        this.mapeado = 0;
+        this.posicao = 0;
+        this.limite = 0;
+    }
+
+    private void feche() {
+        if (canal != null) {
+            try {
+                canal.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            canal = null;
+            mapa = null;
+        }
+    }
+
+    private boolean encha() {
+        try {
+            if (canal != null) {
+                if (mapa == null || !mapa.hasRemaining()) {
+                    final long tamanho = canal.size();
+
+                    if (mapeado >= tamanho)
+                        return false;
+
+                    final long janela = Math.min(JANELA, tamanho - mapeado);
+
+                    mapa = canal.map(FileChannel.MapMode.READ_ONLY, mapeado, janela);
+                    mapeado += janela;
+                }
+
+                limite = Math.min(buffer.length, mapa.remaining());
+                mapa.get(buffer, 0, limite);
+            } else {
+                do {
+                    limite = fonte.read(buffer);
+                } while (limite == 0);
+
+                if (limite < 0) {
+                    limite = 0;
+                    return false;
+                }
+            }
+
+            posicao = 0;
+
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // próximo byte, ou -1 no fim da entrada
+    private int proximo() {
+        if (posicao == limite && !encha())
+            return -1;
+
+        return buffer[posicao++] & 0xFF;
+    }
+
+    private static boolean branco(int b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0x0B;
+    }
+
+    public int leiaInt() {
+        int b = proximo();
+
+        while (branco(b)) {
+            b = proximo();
+        }
+
+        if (b < 0)
+            throw new NoSuchElementException();
+
+        final boolean negativo = b == '-';
+
+        if (b == '-' || b == '+')
+            b = proximo();
+
+        if (b < '0' || b > '9')
+            throw new InputMismatchException();
+
+        // acumula negativo para que Integer.MIN_VALUE caiba
+        int valor = 0;
+
+        do {
+            final int digito = b - '0';
+
+            if (valor < (Integer.MIN_VALUE + digito) / 10)
+                throw new InputMismatchException("Inteiro fora do intervalo");
+
+            valor = valor * 10 - digito;
+            b = proximo();
+        } while (b >= '0' && b <= '9');
+
+        if (b >= 0 && !branco(b))
+            throw new InputMismatchException();
+
+        if (negativo)
+            return valor;
+
+        if (valor == Integer.MIN_VALUE)
+            throw new InputMismatchException("Inteiro fora do intervalo");
+
+        return -valor;
+    }
+}
@@ -0,0 +1,344 @@
+package plp.enquanto.linguagem;
+
+import plp.enquanto.linguagem.Linguagem.*;
+
+/**
+ * Modo de execução em que as operações são trocadas por versões
+ * especializadas na forma dos operandos. Cada operação binária, relação e
+ * atribuição cuja forma tem uma versão própria é trocada por ela, por
+ * exemplo "local &lt; constante" para {@code ExpMenor(Id, Inteiro)}.
+ *
+ * A escolha depende só da forma da árvore, que não muda durante a
+ * execução, e não dos valores: é feita uma vez, aqui, antes de executar,
+ * e nenhum nó precisa voltar atrás.
+ *
+ * Os nós especializados guardam o original só para os visitantes, que
+ * enxergam através deles a árvore original.
+ */
+public class Especializador extends Transformador {
+    static final int SOMA = 0;
+    static final int SUB = 1;
+    static final int SUB_INVERSA = 2;
+    static final int MUL = 3;
+    static final int DIV = 4;
+
+    static final int IGUAL = 0;
+    static final int DESIGUAL = 1;
+    static final int MENOR = 2;
+    static final int MENOR_IGUAL = 3;
+    static final int MAIOR = 4;
+    static final int MAIOR_IGUAL = 5;
+
+    @Override
+    protected Expressao expressao(Expressao exp) {
+        final Expressao nova = super.expressao(exp);
+
+        // as operações verificadas não têm versões especializadas
+        if (nova instanceof ExpBin && !(nova instanceof Verificador.Verificada))
+            return especialize((ExpBin) nova);
+
+        return nova;
+    }
+
+    @Override
+    protected Bool bool(Bool bool) {
+        final Bool nova = super.bool(bool);
+
+        if (nova instanceof ExpRel)
+            return especialize((ExpRel) nova);
+
+        return nova;
+    }
+
+    @Override
+    protected Comando comando(Comando comando) {
+        final Comando novo = super.comando(comando);
+
+        if (novo instanceof Atribuicao)
+            return especialize((Atribuicao) novo);
+
+        return novo;
+    }
+
+    @Override
+    protected Instrucao instrucao(Instrucao instrucao) {
+        if (instrucao instanceof Comando)
+            return comando((Comando) instrucao);
+
+        return super.instrucao(instrucao);
+    }
+
+    static Expressao especialize(ExpBin exp) {
+        final int op;
+
+        if (exp instanceof ExpSoma)
+            op = SOMA;
+        else if (exp instanceof ExpSub)
+            op = SUB;
+        else if (exp instanceof ExpMul)
+            op = MUL;
+        else if (exp instanceof ExpDiv)
+            op = DIV;
+        else if (exp.dir instanceof Inteiro && ((Inteiro) exp.dir).valor >= 0)
+            return new PotConstante((ExpPot) exp, ((Inteiro) exp.dir).valor);
+        else
+            return exp;
+
+        if (exp.esq instanceof Id && exp.dir instanceof Inteiro)
+            return new OpIdConstante(exp, op, (Id) exp.esq, ((Inteiro) exp.dir).valor);
+
+        if (exp.esq instanceof Inteiro && exp.dir instanceof Id && op != DIV)
+            return new OpIdConstante(exp, op == SUB ? SUB_INVERSA : op, (Id) exp.dir, ((Inteiro) exp.esq).valor);
+
+        if (exp.esq instanceof Id && exp.dir instanceof Id)
+            return new OpIdId(exp, op, (Id) exp.esq, (Id) exp.dir);
+
+        return exp;
+    }
+
+    static Bool especialize(ExpRel exp) {
+        final int op;
+
+        if (exp instanceof ExpDesigual)
+            op = DESIGUAL;
+        else if (exp instanceof ExpIgual)
+            op = IGUAL;
+        else if (exp instanceof ExpMenor)
+            op = MENOR;
+        else if (exp instanceof ExpMenorIgual)
+            op = MENOR_IGUAL;
+        else if (exp instanceof ExpMaior)
+            op = MAIOR;
+        else if (exp instanceof ExpMaiorIgual)
+            op = MAIOR_IGUAL;
+        else
+            return exp;
+
+        if (exp.esq instanceof Id && exp.dir instanceof Inteiro)
+            return new CompIdConstante(exp, op, (Id) exp.esq, ((Inteiro) exp.dir).valor);
+
+        if (exp.esq instanceof Inteiro && exp.dir instanceof Id)
+            return new CompIdConstante(exp, espelho(op), (Id) exp.dir, ((Inteiro) exp.esq).valor);
+
+        if (exp.esq instanceof Id && exp.dir instanceof Id)
+            return new CompIdId(exp, op, (Id) exp.esq, (Id) exp.dir);
+
+        return exp;
+    }
+
+    static Comando especialize(Atribuicao atribuicao) {
+        if (atribuicao.exp instanceof Inteiro)
+            return new AtribuicaoConstante(atribuicao, ((Inteiro) atribuicao.exp).valor);
+
+        if (atribuicao.exp instanceof Id)
+            return new AtribuicaoId(atribuicao, (Id) atribuicao.exp);
+
+        return atribuicao;
+    }
+
+    // k < x equivale a x > k
+    static int espelho(int op) {
+        switch (op) {
+            case MENOR: return MAIOR;
+            case MENOR_IGUAL: return MAIOR_IGUAL;
+            case MAIOR: return MENOR;
+            case MAIOR_IGUAL: return MENOR_IGUAL;
+            default: return op;
+        }
+    }
+
+    static final class OpIdConstante implements Expressao {
+        final ExpBin original;
+        final int op;
+        final Id id;
+        final int k;
+
+        OpIdConstante(ExpBin original, int op, Id id, int k) {
+            this.original = original;
+            this.op = op;
+            this.id = id;
+            this.k = k;
+        }
+
+        @Override
+        public int valor(Contexto contexto) {
+            final int v = id.valor(contexto);
+
+            switch (op) {
+                case SOMA: return v + k;
+                case SUB: return v - k;
+                case SUB_INVERSA: return k - v;
+                case MUL: return v * k;
+                default: return v / k;
+            }
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return original.accept(visitor);
+        }
+    }
+
+    static final class OpIdId implements Expressao {
+        final ExpBin original;
+        final int op;
+        final Id esq;
+        final Id dir;
+
+        OpIdId(ExpBin original, int op, Id esq, Id dir) {
+            this.original = original;
+            this.op = op;
+            this.esq = esq;
+            this.dir = dir;
+        }
+
+        @Override
+        public int valor(Contexto contexto) {
+            switch (op) {
+                case SOMA: return esq.valor(contexto) + dir.valor(contexto);
+                case SUB: return esq.valor(contexto) - dir.valor(contexto);
+                case MUL: return esq.valor(contexto) * dir.valor(contexto);
+                default: {
+                    final int divisor = dir.valor(contexto);
+
+                    return esq.valor(contexto) / divisor;
+                }
+            }
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return original.accept(visitor);
+        }
+    }
+
+    // potência com expoente constante não negativo: o expoente não é
+    // reavaliado
+    static final class PotConstante implements Expressao {
+        final ExpPot original;
+        final int expoente;
+
+        PotConstante(ExpPot original, int expoente) {
+            this.original = original;
+            this.expoente = expoente;
+        }
+
+        @Override
+        public int valor(Contexto contexto) {
+            // lido pelo original, cujo filho pode ter sido especializado
+            return Aritmetica.potencia(original.esq.valor(contexto), expoente);
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return original.accept(visitor);
+        }
+    }
+
+    static final class CompIdConstante implements Bool {
+        final ExpRel original;
+        final int op;
+        final Id id;
+        final int k;
+
+        CompIdConstante(ExpRel original, int op, Id id, int k) {
+            this.original = original;
+            this.op = op;
+            this.id = id;
+            this.k = k;
+        }
+
+        @Override
+        public boolean valor(Contexto contexto) {
+            final int v = id.valor(contexto);
+
+            switch (op) {
+                case IGUAL: return v == k;
+                case DESIGUAL: return v != k;
+                case MENOR: return v < k;
+                case MENOR_IGUAL: return v <= k;
+                case MAIOR: return v > k;
+                default: return v >= k;
+            }
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return original.accept(visitor);
+        }
+    }
+
+    static final class CompIdId implements Bool {
+        final ExpRel original;
+        final int op;
+        final Id esq;
+        final Id dir;
+
+        CompIdId(ExpRel original, int op, Id esq, Id dir) {
+            this.original = original;
+            this.op = op;
+            this.esq = esq;
+            this.dir = dir;
+        }
+
+        @Override
+        public boolean valor(Contexto contexto) {
+            final int a = esq.valor(contexto);
+            final int b = dir.valor(contexto);
+
+            switch (op) {
+                case IGUAL: return a == b;
+                case DESIGUAL: return a != b;
+                case MENOR: return a < b;
+                case MENOR_IGUAL: return a <= b;
+                case MAIOR: return a > b;
+                default: return a >= b;
+            }
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return original.accept(visitor);
+        }
+    }
+
+    static final class AtribuicaoConstante implements Comando {
+        final Atribuicao original;
+        final int k;
+
+        AtribuicaoConstante(Atribuicao original, int k) {
+            this.original = original;
+            this.k = k;
+        }
+
+        @Override
+        public void execute(Contexto contexto) {
+            original.atribua(contexto, k);
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return original.accept(visitor);
+        }
+    }
+
+    static final class AtribuicaoId implements Comando {
+        final Atribuicao original;
+        final Id id;
+
+        AtribuicaoId(Atribuicao original, Id id) {
+            this.original = original;
+            this.id = id;
+        }
+
+        @Override
+        public void execute(Contexto contexto) {
+            original.atribua(contexto, id.valor(contexto));
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return original.accept(visitor);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package plp.enquanto.linguagem;
+
+import plp.enquanto.linguagem.Linguagem.*;
+
+/**
+ * Troca os idiomas mais comuns por superinstruções: nós únicos que fazem o
+ * trabalho de três a cinco nós, sem as chamadas virtuais entre eles.
+ *
+ * <ul>
+ * <li>{@code x := x + k}, {@code x := k + x} e {@code x := x - k} somam
+ * k no lugar;</li>
+ * <li>{@code x := x + y}, {@code x := y + x} e {@code x := x - y} somam ou
+ * subtraem y no lugar;</li>
+ * <li>enquanto e se cuja condição compara uma variável com uma constante
+ * ou com outra variável fazem a comparação sem avaliar a condição.</li>
+ * </ul>
+ *
+ * As superinstruções estendem o nó que substituem e mantêm seus filhos,
+ * de modo que os visitantes e os transformadores seguintes enxergam a
+ * árvore original e os nós se conservam. Só guardam slots e constantes,
+ * que nenhuma transformação posterior altera; corpos e ramos são lidos do
+ * próprio nó a cada execução.
+ */
+public class Fusor extends Transformador {
+    private int fundidos;
+
+    public int getFundidos() {
+        return fundidos;
+    }
+
+    private static boolean mesmaVariavel(Atribuicao atribuicao, Expressao exp) {
+        return exp instanceof Id && ((Id) exp).global == atribuicao.global && ((Id) exp).slot == atribuicao.slot;
+    }
+
+    static int leia(Contexto contexto, boolean global, int slot) {
+        return global ? contexto.globais[slot] : contexto.pilha[contexto.base + slot];
+    }
+
+    @Override
+    public No visitAtribuicao(Atribuicao atribuicao) {
+        super.visitAtribuicao(atribuicao);
+
+        if (atribuicao instanceof Incremento || atribuicao instanceof Acumulo)
+            return atribuicao;
+
+        if (!(atribuicao.exp instanceof ExpSoma || atribuicao.exp instanceof ExpSub))
+            return atribuicao;
+
+        // as superinstruções dão a volta no int
+        if (atribuicao.exp instanceof Verificador.Verificada)
+            return atribuicao;
+
+        final ExpBin exp = (ExpBin) atribuicao.exp;
+        final boolean soma = exp instanceof ExpSoma;
+        Expressao outro = null;
+
+        if (mesmaVariavel(atribuicao, exp.esq))
+            outro = exp.dir;
+        else if (soma && mesmaVariavel(atribuicao, exp.dir))
+            outro = exp.esq;
+
+        if (outro instanceof Inteiro) {
+            final int k = ((Inteiro) outro).valor;
+
+            fundidos++;
+            return new Incremento(atribuicao, soma ? k : -k);
+        }
+
+        if (outro instanceof Id) {
+            fundidos++;
+            return new Acumulo(atribuicao, (Id) outro, soma);
+        }
+
+        return atribuicao;
+    }
+
+    @Override
+    public No visitEnquanto(Enquanto enquanto) {
+        super.visitEnquanto(enquanto);
+
+        final Comparacao comparacao = Comparacao.de(enquanto.condicao);
+
+        if (enquanto instanceof EnquantoComparacao || comparacao == null)
+            return enquanto;
+
+        fundidos++;
+        return new EnquantoComparacao(enquanto, comparacao);
+    }
+
+    @Override
+    public No visitSe(Se se) {
+        super.visitSe(se);
+
+        final Comparacao comparacao = Comparacao.de(se.condicao);
+
+        if (se instanceof SeComparacao || comparacao == null)
+            return se;
+
+        fundidos++;
+        return new SeComparacao(se, comparacao);
+    }
+
+    /**
+     * Variável comparada com uma constante ou com outra variável, com os
+     * códigos de operação do Especializador; constantes à esquerda são
+     * trocadas de lado.
+     */
+    static final class Comparacao {
+        final int op;
+        final boolean global;
+        final int slot;
+
+        final boolean variavel;
+        final boolean outroGlobal;
+        final int outroSlot;
+        final int k;
+
+        private Comparacao(int op, Id id, Expressao outro) {
+            this.op = op;
+            this.global = id.global;
+            this.slot = id.slot;
+            this.variavel = outro instanceof Id;
+            this.outroGlobal = variavel && ((Id) outro).global;
+            this.outroSlot = variavel ? ((Id) outro).slot : 0;
+            this.k = variavel ? 0 : ((Inteiro) outro).valor;
+        }
+
+        static Comparacao de(Bool bool) {
+            final int op;
+
+            if (bool instanceof ExpDesigual)
+                op = Especializador.DESIGUAL;
+            else if (bool instanceof ExpIgual)
+                op = Especializador.IGUAL;
+            else if (bool instanceof ExpMenor)
+                op = Especializador.MENOR;
+            else if (bool instanceof ExpMenorIgual)
+                op = Especializador.MENOR_IGUAL;
+            else if (bool instanceof ExpMaior)
+                op = Especializador.MAIOR;
+            else if (bool instanceof ExpMaiorIgual)
+                op = Especializador.MAIOR_IGUAL;
+            else
+                return null;
+
+            final ExpRel exp = (ExpRel) bool;
+
+            if (exp.esq instanceof Id && (exp.dir instanceof Id || exp.dir instanceof Inteiro))
+                return new Comparacao(op, (Id) exp.esq, exp.dir);
+
+            if (exp.esq instanceof Inteiro && exp.dir instanceof Id)
+                return new Comparacao(Especializador.espelho(op), (Id) exp.dir, exp.esq);
+
+            return null;
+        }
+
+        boolean valor(Contexto contexto) {
+            final int a = leia(contexto, global, slot);
+            final int b = variavel ? leia(contexto, outroGlobal, outroSlot) : k;
+
+            switch (op) {
+                case Especializador.IGUAL: return a == b;
+                case Especializador.DESIGUAL: return a != b;
+                case Especializador.MENOR: return a < b;
+                case Especializador.MENOR_IGUAL: return a <= b;
+                case Especializador.MAIOR: return a > b;
+                default: return a >= b;
+            }
+        }
+    }
+
+    // x := x + k; a subtração de k vira soma de -k, que dá o mesmo
+    // resultado em complemento de dois
+    static final class Incremento extends Atribuicao {
+        final int k;
+
+        Incremento(Atribuicao atribuicao, int k) {
+            super(atribuicao.id, atribuicao.exp, atribuicao.ambiente);
+
+            this.linha = atribuicao.linha;
+            this.k = k;
+        }
+
+        @Override
+        public void execute(Contexto contexto) {
+            if (global)
+                contexto.globais[slot] += k;
+            else
+                contexto.pilha[contexto.base + slot] += k;
+        }
+    }
+
+    // x := x + y ou x := x - y
+    static final class Acumulo extends Atribuicao {
+        final boolean outroGlobal;
+        final int outroSlot;
+        final boolean soma;
+
+        Acumulo(Atribuicao atribuicao, Id outro, boolean soma) {
+            super(atribuicao.id, atribuicao.exp, atribuicao.ambiente);
+
+            this.linha = atribuicao.linha;
+            this.outroGlobal = outro.global;
+            this.outroSlot = outro.slot;
+            this.soma = soma;
+        }
+
+        @Override
+        public void execute(Contexto contexto) {
+            final int v = leia(contexto, outroGlobal, outroSlot);
+
+            if (global)
+                contexto.globais[slot] += soma ? v : -v;
+            else
+                contexto.pilha[contexto.base + slot] += soma ? v : -v;
+        }
+    }
+
+    static final class EnquantoComparacao extends Enquanto {
+        final Comparacao comparacao;
+
+        EnquantoComparacao(Enquanto enquanto, Comparacao comparacao) {
+            super(enquanto.condicao, enquanto.faca);
+
+            this.linha = enquanto.linha;
+            this.comparacao = comparacao;
+        }
+
+        @Override
+        public void execute(Contexto contexto) {
+            while (comparacao.valor(contexto)) {
+                contexto.iteracoes++;
+                faca.execute(contexto);
+            }
+        }
+    }
+
+    static final class SeComparacao extends Se {
+        final Comparacao comparacao;
+
+        SeComparacao(Se se, Comparacao comparacao) {
+            super(se.condicao, se.entao, se.listaSenaoSe, se.senao);
+
+            this.linha = se.linha;
+            this.comparacao = comparacao;
+        }
+
+        @Override
+        public void execute(Contexto contexto) {
+            contexto.comandos++;
+
+            if (comparacao.valor(contexto)) {
+                entao.execute(contexto);
+                return;
+            }
+
+            for (SenaoSe senaoSe : listaSenaoSe) {
+                if (senaoSe.condicao.valor(contexto)) {
+                    senaoSe.execute(contexto);
+                    return;
+                }
+            }
+
+            senao.execute(contexto);
+        }
+    }
+}
@@ -3,24 +3,74 @@ package plp.enquanto.linguagem;
 import java.util.*;
 
 public interface Linguagem {
-    Ambiente AMBIENTE = new Ambiente();
-    Scanner SCANNER = new Scanner(System.in);
 
-    interface ExpressaoBase<T> {
-        T getValor();
+    interface No {
+        <R> R accept(Visitor<R> visitor);
+    }
+
+    interface ExpressaoBase<T> extends No {
+        T getValor(Contexto contexto);
     }
 
     interface Bool extends ExpressaoBase<Boolean> {
+        boolean valor(Contexto contexto);
+
+        @Override
+        default Boolean getValor(Contexto contexto) {
+            return valor(contexto);
+        }
     }
 
-    interface Instrucao {
+    interface Instrucao extends No {
     }
 
     interface Comando extends Instrucao {
-        void execute();
+        void execute(Contexto contexto);
     }
 
     interface Expressao extends ExpressaoBase<Integer> {
+        int valor(Contexto contexto);
+
+        @Override
+        default Integer getValor(Contexto contexto) {
+            return valor(contexto);
+        }
+    }
+
+    interface Visitor<R> {
+        R visitPrograma(Programa programa);
+        R visitPara(Para para);
+        R visitSenaoSe(SenaoSe senaoSe);
+        R visitSe(Se se);
+        R visitSkip(Skip skip);
+        R visitEscreva(Escreva escreva);
+        R visitEscolha(Escolha escolha);
+        R visitEnquanto(Enquanto enquanto);
+        R visitExiba(Exiba exiba);
+        R visitBloco(Bloco bloco);
+        R visitChamadaFuncao(ChamadaFuncao chamadaFuncao);
+        R visitFuncao(Funcao funcao);
+        R visitAtribuicao(Atribuicao atribuicao);
+        R visitInteiro(Inteiro inteiro);
+        R visitId(Id id);
+        R visitLeia(Leia leia);
+        R visitExpNeg(ExpNeg expNeg);
+        R visitExpSoma(ExpSoma expSoma);
+        R visitExpSub(ExpSub expSub);
+        R visitExpMul(ExpMul expMul);
+        R visitExpDiv(ExpDiv expDiv);
+        R visitExpPot(ExpPot expPot);
+        R visitBooleano(Booleano booleano);
+        R visitExpDesigual(ExpDesigual expDesigual);
+        R visitExpIgual(ExpIgual expIgual);
+        R visitExpMaior(ExpMaior expMaior);
+        R visitExpMaiorIgual(ExpMaiorIgual expMaiorIgual);
+        R visitExpMenor(ExpMenor expMenor);
+        R visitExpMenorIgual(ExpMenorIgual expMenorIgual);
+        R visitNaoLogico(NaoLogico naoLogico);
+        R visitELogico(ELogico eLogico);
+        R visitOuLogico(OuLogico ouLogico);
+        R visitXorLogico(XorLogico xorLogico);
     }
 
     abstract class ExpBin implements Expressao {
@@ -33,17 +83,33 @@ public interface Linguagem {
         }
     }
 
+    // linha do fonte em que o nó começa, quando veio do analisador; só o
+    // perfil a consulta
+    abstract class Posicionado {
+        int linha;
+
+        public int getLinha() {
+            return linha;
+        }
+
+        public void setLinha(int linha) {
+            this.linha = linha;
+        }
+    }
+
+    // escopo de nomes, usado só na construção da árvore: cada nome recebe
+    // um slot, e os valores ficam no Contexto de cada execução
     class Ambiente {
-        final Map<String, Integer> ids;
+        final Map<String, Integer> slots;
         final Ambiente legado;
 
-        Ambiente() {
-            this.ids = new HashMap<String, Integer>();
+        public Ambiente() {
+            this.slots = new HashMap<String, Integer>();
             this.legado = this;
         }
 
         public Ambiente(Ambiente legado) {
-            this.ids = new HashMap<String, Integer>();
+            this.slots = new HashMap<String, Integer>();
             this.legado = legado;
         }
 
@@ -51,42 +117,79 @@ public interface Linguagem {
             return legado;
         }
 
-        Integer get(String id) {
-            if (!ids.containsKey(id)) {
-                return legado.get(id);
+        boolean isRaiz() {
+            return legado == this;
+        }
+
+        // identificadores ainda não declarados pertencem ao ambiente raiz
+        public Ambiente resolve(String id) {
+            if (slots.containsKey(id) || legado == this) {
+                return this;
             } else {
-                return ids.get(id);
+                return legado.resolve(id);
             }
         }
 
-        void put(String id, Integer valor) {
-            ids.put(id, valor);
+        public int slot(String id) {
+            Integer slot = slots.get(id);
+
+            if (slot == null) {
+                slot = slots.size();
+                slots.put(id, slot);
+            }
+
+            return slot;
         }
     }
 
-    class Programa {
-        private List<Instrucao> comandos;
+    class Programa implements No {
+        List<Instrucao> comandos;
+        Ambiente ambiente;
 
-        public Programa(List<Instrucao> comandos) {
+        public Programa(List<Instrucao> comandos, Ambiente ambiente) {
             this.comandos = comandos;
+            this.ambiente = ambiente;
         }
 
-        public void execute() {
-            for (Instrucao comando : comandos) {
-                if (comando instanceof Comando)
-                    ((Comando) comando).execute();
+        public Contexto execute(Entrada entrada, Saida saida) {
+            final Contexto contexto = new Contexto(this, entrada, saida);
+
+            execute(contexto);
+
+            return contexto;
+        }
+
+        public void execute(Contexto contexto) {
+            contexto.prepare(this);
+
+            final Object evento = Telemetria.ATUAL.inicieExecucao(contexto);
+
+            try {
+                for (Instrucao comando : comandos) {
+                    if (comando instanceof Comando) {
+                        contexto.comandos++;
+                        ((Comando) comando).execute(contexto);
+                    }
+                }
+            } finally {
+                Telemetria.ATUAL.termineExecucao(evento, contexto);
             }
         }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitPrograma(this);
+        }
     }
 
-    class Para implements Comando {
+    class Para extends Posicionado implements Comando {
         final Id id;
 
-        final Expressao de;
-        final Expressao ate;
-        final Expressao passo;
+        Expressao de;
+        Expressao ate;
+        Expressao passo;
 
-        final Comando faca;
+        Comando faca;
 
         public Para(Id id, Expressao de, Expressao ate, Expressao passo, Comando faca) {
             this.id = id;
@@ -99,22 +202,28 @@ public interface Linguagem {
         }
 
         @Override
-        public void execute() {
-            id.setValor(de.getValor());
+        public void execute(Contexto contexto) {
+            id.setValor(contexto, de.valor(contexto));
 
             for (
-                int i = id.getValor();
-                i <= ate.getValor();
-                i += passo.getValor(), id.setValor(i)
+                int i = id.valor(contexto);
+                i <= ate.valor(contexto);
+                i += passo.valor(contexto), id.setValor(contexto, i)
             ) {
-                faca.execute();
+                contexto.iteracoes++;
+                faca.execute(contexto);
             }
         }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitPara(this);
+        }
     }
 
-    class SenaoSe implements Comando {
-        private Bool condicao;
-        private Comando entao;
+    class SenaoSe extends Posicionado implements Comando {
+        Bool condicao;
+        Comando entao;
 
         public SenaoSe(Bool condicao, Comando entao) {
             this.condicao = condicao;
@@ -122,104 +231,206 @@ public interface Linguagem {
         }
 
         @Override
-        public void execute() {
-            entao.execute();
+        public void execute(Contexto contexto) {
+            entao.execute(contexto);
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitSenaoSe(this);
         }
     }
 
     class Se extends SenaoSe implements Comando {
-        private Bool condicao;
-        private Comando senao;
-        private List<SenaoSe> listaSenaoSe;
+        Comando senao;
+        List<SenaoSe> listaSenaoSe;
 
         public Se(Bool condicao, Comando entao, List<SenaoSe> listaSenaoSe, Comando senao) {
             super(condicao, entao);
 
             this.listaSenaoSe = listaSenaoSe;
-            this.condicao = condicao;
             this.senao = senao;
         }
 
         @Override
-        public void execute() {
+        public void execute(Contexto contexto) {
             boolean executaSenao = true;
 
-            if (condicao.getValor()) {
+            // um dos ramos sempre executa
+            contexto.comandos++;
+
+            if (condicao.valor(contexto)) {
                 executaSenao = false;
 
-                super.execute();
+                super.execute(contexto);
             } else {
                 for (SenaoSe senaoSe : listaSenaoSe) {
-                    if (senaoSe.condicao.getValor()) {
+                    if (senaoSe.condicao.valor(contexto)) {
                         executaSenao = false;
 
-                        senaoSe.execute();
+                        senaoSe.execute(contexto);
                         break;
                     }
                 }
             }
 
             if (executaSenao) {
-                senao.execute();
+                senao.execute(contexto);
             }
         }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitSe(this);
+        }
     }
 
     Skip skip = new Skip();
     class Skip implements Comando {
         @Override
-        public void execute() {
+        public void execute(Contexto contexto) {
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitSkip(this);
         }
     }
 
-    class Escreva implements Comando {
-        private Expressao exp;
+    class Escreva extends Posicionado implements Comando {
+        Expressao exp;
 
         public Escreva(Expressao exp) {
             this.exp = exp;
         }
 
         @Override
-        public void execute() {
-            System.out.println(exp.getValor());
+        public void execute(Contexto contexto) {
+            contexto.saida.escreva(exp.valor(contexto));
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitEscreva(this);
         }
     }
 
-    class Escolha implements Comando {
-        private Expressao padrao;
-        private Map<Expressao, Comando> comandos;
-        private Comando outro;
+    class Escolha extends Posicionado implements Comando {
+        Expressao padrao;
+        int[] chaves;
+        Comando[] comandos;
+        Comando outro;
 
-        public Escolha(Expressao padrao, Map<Expressao, Comando> comandos, Comando outro) {
+        // despacho em O(1): tabela densa indexada por (valor - minimo) ou,
+        // para rótulos esparsos, dispersão com endereçamento aberto. Ambas
+        // guardam a posição do caso em comandos mais um; zero é "outro".
+        private int minimo;
+        private int[] tabela;
+        private int[] dispersao;
+        private int[] posicoes;
+
+        public Escolha(Expressao padrao, Map<Integer, Comando> casos, Comando outro) {
             this.padrao = padrao;
-            this.comandos = comandos;
+            this.chaves = new int[casos.size()];
+            this.comandos = new Comando[casos.size()];
             this.outro = outro;
+
+            int i = 0;
+            for (Map.Entry<Integer, Comando> caso : casos.entrySet()) {
+                chaves[i] = caso.getKey();
+                comandos[i] = caso.getValue();
+                i++;
+            }
+
+            monteDespacho();
         }
 
-        @Override
-        public void execute() {
-            boolean executaOutro = true;
-            int valor = padrao.getValor();
+        private void monteDespacho() {
+            if (chaves.length == 0) {
+                tabela = new int[0];
+                return;
+            }
+
+            int min = chaves[0];
+            int max = chaves[0];
+
+            for (int chave : chaves) {
+                min = Math.min(min, chave);
+                max = Math.max(max, chave);
+            }
+
+            if ((long) max - min < Math.max(64, 2 * chaves.length)) {
+                minimo = min;
+                tabela = new int[max - min + 1];
+
+                for (int i = 0; i < chaves.length; i++) {
+                    tabela[chaves[i] - min] = i + 1;
+                }
+            } else {
+                final int capacidade = Integer.highestOneBit(chaves.length * 2 - 1) << 1;
+
+                dispersao = new int[capacidade];
+                posicoes = new int[capacidade];
+
+                for (int i = 0; i < chaves.length; i++) {
+                    int h = espalhe(chaves[i]) & (capacidade - 1);
+
+                    while (posicoes[h] != 0) {
+                        h = (h + 1) & (capacidade - 1);
+                    }
+
+                    dispersao[h] = chaves[i];
+                    posicoes[h] = i + 1;
+                }
+            }
+        }
 
-            for (Expressao exp : comandos.keySet()) {
-                if (exp.getValor().equals(valor)) {
-                    executaOutro = false;
+        private static int espalhe(int valor) {
+            final int h = valor * 0x9E3779B9;
 
-                    comandos.get(exp).execute();
-                    // XXX: pára a execução por padrão
-                    break;
+            return h ^ (h >>> 16);
+        }
+
+        private int caso(int valor) {
+            if (tabela != null) {
+                final long i = (long) valor - minimo;
+
+                return i >= 0 && i < tabela.length ? tabela[(int) i] - 1 : -1;
+            }
+
+            final int mascara = dispersao.length - 1;
+
+            for (int h = espalhe(valor) & mascara; posicoes[h] != 0; h = (h + 1) & mascara) {
+                if (dispersao[h] == valor) {
+                    return posicoes[h] - 1;
                 }
             }
 
-            if (executaOutro) {
-                outro.execute();
+            return -1;
+        }
+
+        @Override
+        public void execute(Contexto contexto) {
+            final int i = caso(padrao.valor(contexto));
+
+            contexto.comandos++;
+
+            if (i >= 0) {
+                comandos[i].execute(contexto);
+            } else {
+                outro.execute(contexto);
             }
         }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitEscolha(this);
+        }
     }
 
-    class Enquanto implements Comando {
-        private Bool condicao;
-        private Comando faca;
+    class Enquanto extends Posicionado implements Comando {
+        Bool condicao;
+        Comando faca;
 
         public Enquanto(Bool condicao, Comando faca) {
             this.condicao = condicao;
@@ -227,68 +438,103 @@ public interface Linguagem {
         }
 
         @Override
-        public void execute() {
-            while (condicao.getValor()) {
-                faca.execute();
+        public void execute(Contexto contexto) {
+            while (condicao.valor(contexto)) {
+                contexto.iteracoes++;
+                faca.execute(contexto);
             }
         }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitEnquanto(this);
+        }
     }
 
-    class Exiba implements Comando {
+    class Exiba extends Posicionado implements Comando {
         public Exiba(String texto) {
             this.texto = texto;
+            this.bytes = Saida.codifique(texto);
         }
 
-        private String texto;
+        String texto;
+        private final byte[] bytes;
 
         @Override
-        public void execute() {
-            System.out.println(texto);
+        public void execute(Contexto contexto) {
+            contexto.saida.escreva(bytes);
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitExiba(this);
         }
     }
 
-    class Bloco implements Comando {
-        private List<Comando> comandos;
+    class Bloco extends Posicionado implements Comando {
+        List<Comando> comandos;
 
         public Bloco(List<Comando> comandos) {
             this.comandos = comandos;
         }
 
         @Override
-        public void execute() {
+        public void execute(Contexto contexto) {
+            contexto.comandos += comandos.size();
+
             for (Comando comando : comandos) {
-                comando.execute();
+                comando.execute(contexto);
             }
         }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitBloco(this);
+        }
     }
 
-    class ChamadaFuncao implements Expressao {
-        private Funcao funcao;
-        private List<Expressao> params;
+    class ChamadaFuncao extends Posicionado implements Expressao {
+        Funcao funcao;
+        List<Expressao> params;
 
         public ChamadaFuncao(Funcao funcao, List<Expressao> params) {
             this.params = params;
             this.funcao = funcao;
         }
 
+        // uma chamada em cada AMOSTRA vira evento, quando o JFR está gravando
         @Override
-        public Integer getValor() {
-            for (int i = 0; i < funcao.args.size(); i++) {
-                String id = funcao.args.get(i);
+        public int valor(Contexto contexto) {
+            if ((++contexto.chamadas & Telemetria.AMOSTRA) == 0)
+                return Telemetria.ATUAL.chamada(this, contexto);
+
+            return avalie(contexto);
+        }
+
+        int avalie(Contexto contexto) {
+            final int quadro = contexto.topo;
 
-                funcao.ambiente.put(id, params.get(i).getValor());
+            // chamadas aninhadas nos argumentos empilham seus quadros acima
+            // dos argumentos já avaliados, e os desempilham ao retornar
+            for (int i = 0; i < params.size(); i++) {
+                contexto.empilhe(params.get(i).valor(contexto));
             }
 
-            return funcao.retorno.getValor();
+            return funcao.aplique(contexto, quadro);
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitChamadaFuncao(this);
         }
     }
 
-    class Funcao implements Instrucao {
-        private String id;
-        private Expressao retorno;
+    class Funcao extends Posicionado implements Instrucao {
+        String id;
+        Expressao retorno;
 
-        private Ambiente ambiente;
-        private List<String> args;
+        Ambiente ambiente;
+        List<String> args;
 
         public Funcao(String id, Ambiente ambiente) {
             this.id = id;
@@ -303,6 +549,20 @@ public interface Linguagem {
             this.retorno = retorno;
         }
 
+        // avalia o corpo sobre o quadro já empilhado a partir de quadro, e
+        // o desempilha
+        int aplique(Contexto contexto, int quadro) {
+            final int base = contexto.base;
+            contexto.base = quadro;
+
+            try {
+                return retorno.valor(contexto);
+            } finally {
+                contexto.base = base;
+                contexto.topo = quadro;
+            }
+        }
+
         @Override
         public String toString() {
             StringBuilder buffer = new StringBuilder();
@@ -317,84 +577,127 @@ public interface Linguagem {
 
             return String.format("%s(%s)", id, buffer.toString());
         }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitFuncao(this);
+        }
     }
 
-    class Atribuicao implements Comando {
-        private Ambiente ambiente;
+    class Atribuicao extends Posicionado implements Comando {
+        Ambiente ambiente;
+        int slot;
+        final boolean global;
 
-        private String id;
-        private Expressao exp;
+        String id;
+        Expressao exp;
 
         public Atribuicao(String id, Expressao exp, Ambiente ambiente) {
-            this.ambiente = ambiente;
+            this.ambiente = ambiente.resolve(id);
+            this.slot = this.ambiente.slot(id);
+            this.global = this.ambiente.isRaiz();
 
             this.id = id;
             this.exp = exp;
         }
 
         @Override
-        public void execute() {
-            ambiente.put(id, exp.getValor());
+        public void execute(Contexto contexto) {
+            atribua(contexto, exp.valor(contexto));
+        }
+
+        void atribua(Contexto contexto, int valor) {
+            if (global)
+                contexto.globais[slot] = valor;
+            else
+                contexto.pilha[contexto.base + slot] = valor;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitAtribuicao(this);
         }
     }
 
     class Inteiro implements Expressao {
-        private int valor;
+        int valor;
 
         public Inteiro(int valor) {
             this.valor = valor;
         }
 
         @Override
-        public Integer getValor() {
+        public int valor(Contexto contexto) {
             return valor;
         }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitInteiro(this);
+        }
     }
 
     class Id implements Expressao {
-        private Ambiente ambiente;
-        private String id;
+        Ambiente ambiente;
+        int slot;
+        final boolean global;
+
+        String id;
 
         public Id(String id, Ambiente ambiente) {
-            this.ambiente = ambiente;
+            this.ambiente = ambiente.resolve(id);
+            this.slot = this.ambiente.slot(id);
+            this.global = this.ambiente.isRaiz();
+
             this.id = id;
         }
 
         @Override
-        public Integer getValor() {
-            final Integer v = ambiente.get(id);
-            final int valor;
-            if (v != null)
-                valor = v;
-            else
-                valor = 0;
+        public int valor(Contexto contexto) {
+            return global ? contexto.globais[slot] : contexto.pilha[contexto.base + slot];
+        }
 
-            return valor;
+        void setValor(Contexto contexto, int valor) {
+            if (global)
+                contexto.globais[slot] = valor;
+            else
+                contexto.pilha[contexto.base + slot] = valor;
         }
 
-        void setValor(Integer valor) {
-            ambiente.put(id, valor);
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitId(this);
         }
     }
 
     Leia leia = new Leia();
     class Leia implements Expressao {
         @Override
-        public Integer getValor() {
-            return SCANNER.nextInt();
+        public int valor(Contexto contexto) {
+            return contexto.entrada.leiaInt();
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitLeia(this);
         }
     }
 
     class ExpNeg implements Expressao {
-        private Expressao exp;
+        Expressao exp;
 
         public ExpNeg(Expressao exp) {
             this.exp = exp;
         }
 
         @Override
-        public Integer getValor() {
-            return -exp.getValor();
+        public int valor(Contexto contexto) {
+            return -exp.valor(contexto);
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitExpNeg(this);
         }
     }
 
@@ -404,8 +707,13 @@ public interface Linguagem {
         }
 
         @Override
-        public Integer getValor() {
-            return esq.getValor() + dir.getValor();
+        public int valor(Contexto contexto) {
+            return esq.valor(contexto) + dir.valor(contexto);
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitExpSoma(this);
         }
     }
 
@@ -415,8 +723,13 @@ public interface Linguagem {
         }
 
         @Override
-        public Integer getValor() {
-            return esq.getValor() - dir.getValor();
+        public int valor(Contexto contexto) {
+            return esq.valor(contexto) - dir.valor(contexto);
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitExpSub(this);
         }
     }
 
@@ -426,8 +739,13 @@ public interface Linguagem {
         }
 
         @Override
-        public Integer getValor() {
-            return esq.getValor() * dir.getValor();
+        public int valor(Contexto contexto) {
+            return esq.valor(contexto) * dir.valor(contexto);
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitExpMul(this);
         }
     }
 
@@ -437,10 +755,15 @@ public interface Linguagem {
         }
 
         @Override
-        public Integer getValor() {
-            Integer divisor = dir.getValor();
+        public int valor(Contexto contexto) {
+            int divisor = dir.valor(contexto);
 
-            return esq.getValor() / divisor;
+            return esq.valor(contexto) / divisor;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitExpDiv(this);
         }
     }
 
@@ -450,22 +773,32 @@ public interface Linguagem {
         }
 
         @Override
-        public Integer getValor() {
-            return (int) Math.pow(esq.getValor(), dir.getValor());
+        public int valor(Contexto contexto) {
+            return Aritmetica.potencia(esq.valor(contexto), dir.valor(contexto));
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitExpPot(this);
         }
     }
 
     class Booleano implements Bool {
-        private boolean valor;
+        boolean valor;
 
         public Booleano(boolean valor) {
             this.valor = valor;
         }
 
         @Override
-        public Boolean getValor() {
+        public boolean valor(Contexto contexto) {
             return valor;
         }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitBooleano(this);
+        }
     }
 
     abstract class ExpRel implements Bool {
@@ -484,8 +817,13 @@ public interface Linguagem {
         }
 
         @Override
-        public Boolean getValor() {
-            return !super.getValor();
+        public boolean valor(Contexto contexto) {
+            return !super.valor(contexto);
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitExpDesigual(this);
         }
     }
 
@@ -495,8 +833,13 @@ public interface Linguagem {
         }
 
         @Override
-        public Boolean getValor() {
-            return esq.getValor().equals(dir.getValor());
+        public boolean valor(Contexto contexto) {
+            return esq.valor(contexto) == dir.valor(contexto);
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitExpIgual(this);
         }
     }
 
@@ -506,8 +849,13 @@ public interface Linguagem {
         }
 
         @Override
-        public Boolean getValor() {
-            return esq.getValor() > dir.getValor();
+        public boolean valor(Contexto contexto) {
+            return esq.valor(contexto) > dir.valor(contexto);
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitExpMaior(this);
         }
     }
 
@@ -517,8 +865,13 @@ public interface Linguagem {
         }
 
         @Override
-        public Boolean getValor() {
-            return esq.getValor() >= dir.getValor();
+        public boolean valor(Contexto contexto) {
+            return esq.valor(contexto) >= dir.valor(contexto);
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitExpMaiorIgual(this);
         }
     }
 
@@ -528,8 +881,13 @@ public interface Linguagem {
         }
 
         @Override
-        public Boolean getValor() {
-            return esq.getValor() < dir.getValor();
+        public boolean valor(Contexto contexto) {
+            return esq.valor(contexto) < dir.valor(contexto);
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitExpMenor(this);
         }
     }
 
@@ -539,27 +897,37 @@ public interface Linguagem {
         }
 
         @Override
-        public Boolean getValor() {
-            return esq.getValor() <= dir.getValor();
+        public boolean valor(Contexto contexto) {
+            return esq.valor(contexto) <= dir.valor(contexto);
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitExpMenorIgual(this);
         }
     }
 
     class NaoLogico implements Bool {
-        private Bool b;
+        Bool b;
 
         public NaoLogico(Bool b) {
             this.b = b;
         }
 
         @Override
-        public Boolean getValor() {
-            return !b.getValor();
+        public boolean valor(Contexto contexto) {
+            return !b.valor(contexto);
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitNaoLogico(this);
         }
     }
 
     public class ELogico implements Bool {
-        private Bool esq;
-        private Bool dir;
+        Bool esq;
+        Bool dir;
 
         public ELogico(Bool esq, Bool dir) {
             this.esq = esq;
@@ -567,14 +935,19 @@ public interface Linguagem {
         }
 
         @Override
-        public Boolean getValor() {
-            return esq.getValor() && dir.getValor();
+        public boolean valor(Contexto contexto) {
+            return esq.valor(contexto) && dir.valor(contexto);
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitELogico(this);
         }
     }
 
     public class OuLogico implements Bool {
-        private Bool esq;
-        private Bool dir;
+        Bool esq;
+        Bool dir;
 
         public OuLogico(Bool esq, Bool dir) {
             this.esq = esq;
@@ -582,14 +955,19 @@ public interface Linguagem {
         }
 
         @Override
-        public Boolean getValor() {
-            return esq.getValor() || dir.getValor();
+        public boolean valor(Contexto contexto) {
+            return esq.valor(contexto) || dir.valor(contexto);
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitOuLogico(this);
         }
     }
 
     public class XorLogico implements Bool {
-        private Bool esq;
-        private Bool dir;
+        Bool esq;
+        Bool dir;
 
         public XorLogico(Bool esq, Bool dir) {
             this.esq = esq;
@@ -597,8 +975,13 @@ public interface Linguagem {
         }
 
         @Override
-        public Boolean getValor() {
-            return esq.getValor() ^ dir.getValor();
+        public boolean valor(Contexto contexto) {
+            return esq.valor(contexto) ^ dir.valor(contexto);
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitXorLogico(this);
         }
     }
 }
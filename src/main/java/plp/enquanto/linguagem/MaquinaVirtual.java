@@ -0,0 +1,241 @@
+package plp.enquanto.linguagem;
+
+import java.util.Arrays;
+
+/**
+ * Executa o código gerado pelo Montador num único laço de despacho, sobre
+ * um int[] de registradores. Cada função usa uma janela do mesmo vetor que
+ * começa nos argumentos, já postos pelo chamador nos seus registradores
+ * mais altos; o retorno, a janela e o destino do chamador ficam noutro
+ * int[], e as chamadas não aprofundam a pilha da JVM.
+ *
+ * Como o Programa, o código não guarda estado de execução: as globais são
+ * lidas do Contexto no início e devolvidas a ele no fim.
+ */
+public final class MaquinaVirtual {
+    // instruções, com seus operandos: d é o registrador de destino, a e b
+    // os de origem, k uma posição na tabela de constantes ou de textos e
+    // s o deslocamento do salto a partir do início da instrução
+    static final int PARE = 0;            //
+    static final int CONSTANTE = 1;       // d k
+    static final int MOVA = 2;            // d a
+    static final int GLOBAL = 3;          // d slot
+    static final int LEIA = 4;            // d
+    static final int ESCREVA = 5;         // a
+    static final int EXIBA = 6;           // k
+    static final int NEGUE = 7;           // d a
+    static final int SOME = 8;            // d a b
+    static final int SUBTRAIA = 9;        // d a b
+    static final int MULTIPLIQUE = 10;    // d a b
+    static final int DIVIDA = 11;         // d a b
+    static final int POTENCIA = 12;       // d a b
+    static final int SALTE = 13;          // s
+    static final int SE_IGUAL = 14;       // a b s
+    static final int SE_DIFERENTE = 15;   // a b s
+    static final int SE_MENOR = 16;       // a b s
+    static final int SE_MENOR_IGUAL = 17; // a b s
+    static final int TABELA = 18;         // a minimo n s[n] s
+    static final int ESPARSA = 19;        // a n chaves[n] s[n] s
+    static final int CHAME = 20;          // d primeiro funcao
+    static final int RETORNE = 21;        // a
+    static final int INDEFINIDA = 22;     //
+    static final int PROXIMO = 23;        // a b limite s: a += b, salta se a <= limite
+
+    // as mesmas operações, verificadas pela Aritmetica
+    static final int NEGUE_EXATA = 24;       // d a
+    static final int SOME_EXATA = 25;        // d a b
+    static final int SUBTRAIA_EXATA = 26;    // d a b
+    static final int MULTIPLIQUE_EXATA = 27; // d a b
+    static final int DIVIDA_EXATA = 28;      // d a b
+    static final int POTENCIA_EXATA = 29;    // d a b
+
+    private final int[] codigo;
+    private final int[] constantes;
+    private final byte[][] textos;
+    private final int[] entradas;
+    private final int[] quadros;
+    private final int globais;
+    private final int principal;
+
+    MaquinaVirtual(int[] codigo, int[] constantes, byte[][] textos, int[] entradas, int[] quadros,
+            int globais, int principal) {
+        this.codigo = codigo;
+        this.constantes = constantes;
+        this.textos = textos;
+        this.entradas = entradas;
+        this.quadros = quadros;
+        this.globais = globais;
+        this.principal = principal;
+    }
+
+    public int getTamanho() {
+        return codigo.length;
+    }
+
+    public void execute(Contexto contexto) {
+        if (contexto.globais.length < globais)
+            contexto.globais = Arrays.copyOf(contexto.globais, globais);
+
+        final int[] codigo = this.codigo;
+        final int[] constantes = this.constantes;
+
+        int[] r = new int[Math.max(64, 2 * principal)];
+        int[] retornos = new int[48];
+        int chamadas = 0;
+        int base = 0;
+        int pc = 0;
+
+        System.arraycopy(contexto.globais, 0, r, 0, globais);
+
+        final Object evento = Telemetria.ATUAL.inicieExecucao(contexto);
+
+        try {
+            for (;;) {
+                switch (codigo[pc]) {
+                case PARE:
+                    return;
+                case CONSTANTE:
+                    r[base + codigo[pc + 1]] = constantes[codigo[pc + 2]];
+                    pc += 3;
+                    break;
+                case MOVA:
+                    r[base + codigo[pc + 1]] = r[base + codigo[pc + 2]];
+                    pc += 3;
+                    break;
+                case GLOBAL:
+                    r[base + codigo[pc + 1]] = r[codigo[pc + 2]];
+                    pc += 3;
+                    break;
+                case LEIA:
+                    r[base + codigo[pc + 1]] = contexto.entrada.leiaInt();
+                    pc += 2;
+                    break;
+                case ESCREVA:
+                    contexto.saida.escreva(r[base + codigo[pc + 1]]);
+                    pc += 2;
+                    break;
+                case EXIBA:
+                    contexto.saida.escreva(textos[codigo[pc + 1]]);
+                    pc += 2;
+                    break;
+                case NEGUE:
+                    r[base + codigo[pc + 1]] = -r[base + codigo[pc + 2]];
+                    pc += 3;
+                    break;
+                case SOME:
+                    r[base + codigo[pc + 1]] = r[base + codigo[pc + 2]] + r[base + codigo[pc + 3]];
+                    pc += 4;
+                    break;
+                case SUBTRAIA:
+                    r[base + codigo[pc + 1]] = r[base + codigo[pc + 2]] - r[base + codigo[pc + 3]];
+                    pc += 4;
+                    break;
+                case MULTIPLIQUE:
+                    r[base + codigo[pc + 1]] = r[base + codigo[pc + 2]] * r[base + codigo[pc + 3]];
+                    pc += 4;
+                    break;
+                case DIVIDA:
+                    r[base + codigo[pc + 1]] = r[base + codigo[pc + 2]] / r[base + codigo[pc + 3]];
+                    pc += 4;
+                    break;
+                case POTENCIA:
+                    r[base + codigo[pc + 1]] = Aritmetica.potencia(r[base + codigo[pc + 2]], r[base + codigo[pc + 3]]);
+                    pc += 4;
+                    break;
+                case NEGUE_EXATA:
+                    r[base + codigo[pc + 1]] = Aritmetica.negue(r[base + codigo[pc + 2]]);
+                    pc += 3;
+                    break;
+                case SOME_EXATA:
+                    r[base + codigo[pc + 1]] = Aritmetica.some(r[base + codigo[pc + 2]], r[base + codigo[pc + 3]]);
+                    pc += 4;
+                    break;
+                case SUBTRAIA_EXATA:
+                    r[base + codigo[pc + 1]] = Aritmetica.subtraia(r[base + codigo[pc + 2]], r[base + codigo[pc + 3]]);
+                    pc += 4;
+                    break;
+                case MULTIPLIQUE_EXATA:
+                    r[base + codigo[pc + 1]] = Aritmetica.multiplique(r[base + codigo[pc + 2]], r[base + codigo[pc + 3]]);
+                    pc += 4;
+                    break;
+                case DIVIDA_EXATA:
+                    r[base + codigo[pc + 1]] = Aritmetica.divida(r[base + codigo[pc + 2]], r[base + codigo[pc + 3]]);
+                    pc += 4;
+                    break;
+                case POTENCIA_EXATA:
+                    r[base + codigo[pc + 1]] = Aritmetica.potenciaExata(r[base + codigo[pc + 2]], r[base + codigo[pc + 3]]);
+                    pc += 4;
+                    break;
+                case SALTE:
+                    pc += codigo[pc + 1];
+                    break;
+                case SE_IGUAL:
+                    pc += r[base + codigo[pc + 1]] == r[base + codigo[pc + 2]] ? codigo[pc + 3] : 4;
+                    break;
+                case SE_DIFERENTE:
+                    pc += r[base + codigo[pc + 1]] != r[base + codigo[pc + 2]] ? codigo[pc + 3] : 4;
+                    break;
+                case SE_MENOR:
+                    pc += r[base + codigo[pc + 1]] < r[base + codigo[pc + 2]] ? codigo[pc + 3] : 4;
+                    break;
+                case SE_MENOR_IGUAL:
+                    pc += r[base + codigo[pc + 1]] <= r[base + codigo[pc + 2]] ? codigo[pc + 3] : 4;
+                    break;
+                case PROXIMO: {
+                    final int contador = r[base + codigo[pc + 1]] += r[base + codigo[pc + 2]];
+
+                    pc += contador <= r[base + codigo[pc + 3]] ? codigo[pc + 4] : 5;
+                    break;
+                }
+                case TABELA: {
+                    final long i = (long) r[base + codigo[pc + 1]] - codigo[pc + 2];
+                    final int n = codigo[pc + 3];
+
+                    pc += codigo[pc + 4 + (i >= 0 && i < n ? (int) i : n)];
+                    break;
+                }
+                case ESPARSA: {
+                    final int n = codigo[pc + 2];
+                    final int i = Arrays.binarySearch(codigo, pc + 3, pc + 3 + n, r[base + codigo[pc + 1]]);
+
+                    pc += codigo[i >= 0 ? i + n : pc + 3 + 2 * n];
+                    break;
+                }
+                case CHAME: {
+                    final int funcao = codigo[pc + 3];
+                    final int quadro = base + codigo[pc + 2];
+
+                    if (quadro + quadros[funcao] > r.length)
+                        r = Arrays.copyOf(r, Math.max(2 * r.length, quadro + quadros[funcao]));
+
+                    if (chamadas + 3 > retornos.length)
+                        retornos = Arrays.copyOf(retornos, 2 * retornos.length);
+
+                    retornos[chamadas++] = pc + 4;
+                    retornos[chamadas++] = base;
+                    retornos[chamadas++] = base + codigo[pc + 1];
+
+                    base = quadro;
+                    pc = entradas[funcao];
+                    break;
+                }
+                case RETORNE: {
+                    final int valor = r[base + codigo[pc + 1]];
+
+                    r[retornos[--chamadas]] = valor;
+                    base = retornos[--chamadas];
+                    pc = retornos[--chamadas];
+                    break;
+                }
+                case INDEFINIDA:
+                    throw new IllegalStateException("Chamada de função não declarada.");
+                default:
+                    throw new IllegalStateException(String.format("Instrução inválida %d em %d.", codigo[pc], pc));
+                }
+            }
+        } finally {
+            System.arraycopy(r, 0, contexto.globais, 0, globais);
+            Telemetria.ATUAL.termineExecucao(evento, contexto);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package plp.enquanto.linguagem;
+
+import java.util.*;
+
+import plp.enquanto.linguagem.Linguagem.*;
+
+/**
+ * Troca as chamadas de funções puras por chamadas que consultam uma cache
+ * limitada antes de avaliar o corpo. Uma função é pura quando nem ela nem
+ * as funções que chama usam leia.
+ *
+ * A chave de cada entrada é a tupla dos argumentos seguida dos valores
+ * atuais das globais que a função lê, direta ou indiretamente. Reatribuir
+ * uma dessas globais muda a chave, de modo que entradas antigas nunca são
+ * devolvidas para o novo valor; elas só saem da cache por despejo.
+ *
+ * As caches pertencem ao Contexto de cada execução e são criadas na
+ * primeira chamada; a árvore só guarda a posição de cada uma.
+ */
+public class Memorizador extends Transformador {
+    public static final int CAPACIDADE = 1024;
+
+    private final int capacidade;
+    private final Map<Funcao, Integer> indices = new LinkedHashMap<Funcao, Integer>();
+    private final Map<Funcao, Set<Integer>> dependencias = new HashMap<Funcao, Set<Integer>>();
+    private final Dependencias analise = new Dependencias();
+
+    public Memorizador() {
+        this(CAPACIDADE);
+    }
+
+    public Memorizador(int capacidade) {
+        this.capacidade = capacidade;
+    }
+
+    @Override
+    public No visitChamadaFuncao(ChamadaFuncao chamada) {
+        super.visitChamadaFuncao(chamada);
+
+        if (chamada instanceof ChamadaMemorizada || chamada.funcao == null)
+            return chamada;
+
+        final Set<Integer> globais = dependencias(chamada.funcao);
+
+        if (globais == null)
+            return chamada;
+
+        Integer indice = indices.get(chamada.funcao);
+
+        if (indice == null) {
+            indice = indices.size();
+            indices.put(chamada.funcao, indice);
+        }
+
+        final int[] slots = new int[globais.size()];
+        int i = 0;
+
+        for (Integer slot : globais) {
+            slots[i++] = slot;
+        }
+
+        return new ChamadaMemorizada(chamada, indice, slots, capacidade);
+    }
+
+    public long getAcertos(Contexto contexto) {
+        long acertos = 0;
+
+        for (int indice : indices.values()) {
+            final Cache cache = contexto.cache(indice);
+
+            if (cache != null)
+                acertos += cache.acertos;
+        }
+
+        return acertos;
+    }
+
+    public long getFalhas(Contexto contexto) {
+        long falhas = 0;
+
+        for (int indice : indices.values()) {
+            final Cache cache = contexto.cache(indice);
+
+            if (cache != null)
+                falhas += cache.falhas;
+        }
+
+        return falhas;
+    }
+
+    public String relatorio(Contexto contexto) {
+        final StringBuilder relatorio = new StringBuilder();
+
+        for (Map.Entry<Funcao, Integer> indice : indices.entrySet()) {
+            final Cache cache = contexto.cache(indice.getValue());
+
+            relatorio.append(String.format("%s: %d acertos, %d falhas%n", indice.getKey(),
+                    cache == null ? 0 : cache.acertos, cache == null ? 0 : cache.falhas));
+        }
+
+        return relatorio.toString();
+    }
+
+    // slots das globais lidas pela função, ou null se ela não for pura
+    private Set<Integer> dependencias(Funcao funcao) {
+        if (!dependencias.containsKey(funcao)) {
+            final Dependencias.Leituras leituras = analise.leituras(funcao.retorno);
+
+            dependencias.put(funcao, leituras.pura() ? leituras.globais : null);
+        }
+
+        return dependencias.get(funcao);
+    }
+
+    /**
+     * Cache associativa por conjuntos, de tamanho fixo: cada tupla só pode
+     * ocupar uma das VIAS entradas do conjunto indicado por seu hash, e o
+     * despejo dentro do conjunto é LRU. As tuplas ficam num único int[],
+     * sem objetos por entrada.
+     */
+    static final class Cache {
+        private static final int VIAS = 4;
+
+        final int aridade;
+        final int[] globais;
+
+        private final int largura;
+        private final int mascara;
+        private final int[] chaves;
+        private final int[] resultados;
+        private final long[] usos;
+        private long relogio;
+
+        long acertos;
+        long falhas;
+
+        Cache(int aridade, int[] globais, int capacidade) {
+            this.aridade = aridade;
+            this.globais = globais;
+            this.largura = aridade + globais.length;
+
+            final int conjuntos = Integer.highestOneBit(Math.max(1, capacidade / VIAS));
+
+            this.mascara = conjuntos - 1;
+            this.chaves = new int[conjuntos * VIAS * largura];
+            this.resultados = new int[conjuntos * VIAS];
+            this.usos = new long[conjuntos * VIAS];
+        }
+
+        int hash(int[] pilha, int quadro, int[] valores) {
+            int h = 1;
+
+            for (int i = 0; i < aridade; i++) {
+                h = 31 * h + pilha[quadro + i];
+            }
+
+            for (int slot : globais) {
+                h = 31 * h + valores[slot];
+            }
+
+            h *= 0x9E3779B9;
+
+            return h ^ (h >>> 16);
+        }
+
+        private boolean igual(int entrada, int[] pilha, int quadro, int[] valores) {
+            final int inicio = entrada * largura;
+
+            for (int i = 0; i < aridade; i++) {
+                if (chaves[inicio + i] != pilha[quadro + i])
+                    return false;
+            }
+
+            for (int i = 0; i < globais.length; i++) {
+                if (chaves[inicio + aridade + i] != valores[globais[i]])
+                    return false;
+            }
+
+            return true;
+        }
+
+        // posição da entrada com a tupla, ou -1
+        int procure(int hash, int[] pilha, int quadro, int[] valores) {
+            final int conjunto = (hash & mascara) * VIAS;
+
+            for (int e = conjunto; e < conjunto + VIAS; e++) {
+                if (usos[e] != 0 && igual(e, pilha, quadro, valores)) {
+                    usos[e] = ++relogio;
+                    acertos++;
+
+                    return e;
+                }
+            }
+
+            falhas++;
+
+            return -1;
+        }
+
+        int resultado(int entrada) {
+            return resultados[entrada];
+        }
+
+        void guarde(int hash, int[] pilha, int quadro, int[] valores, int resultado) {
+            final int conjunto = (hash & mascara) * VIAS;
+            int vitima = conjunto;
+
+            for (int e = conjunto + 1; e < conjunto + VIAS; e++) {
+                if (usos[e] < usos[vitima])
+                    vitima = e;
+            }
+
+            final int inicio = vitima * largura;
+
+            System.arraycopy(pilha, quadro, chaves, inicio, aridade);
+
+            for (int i = 0; i < globais.length; i++) {
+                chaves[inicio + aridade + i] = valores[globais[i]];
+            }
+
+            resultados[vitima] = resultado;
+            usos[vitima] = ++relogio;
+        }
+    }
+
+    static final class ChamadaMemorizada extends ChamadaFuncao {
+        private final int indice;
+        private final int[] globais;
+        private final int capacidade;
+
+        ChamadaMemorizada(ChamadaFuncao chamada, int indice, int[] globais, int capacidade) {
+            super(chamada.funcao, chamada.params);
+
+            this.linha = chamada.linha;
+            this.indice = indice;
+            this.globais = globais;
+            this.capacidade = capacidade;
+        }
+
+        @Override
+        int avalie(Contexto contexto) {
+            final int quadro = contexto.topo;
+
+            for (int i = 0; i < params.size(); i++) {
+                contexto.empilhe(params.get(i).valor(contexto));
+            }
+
+            Cache cache = contexto.cache(indice);
+
+            if (cache == null) {
+                cache = new Cache(params.size(), globais, capacidade);
+                contexto.guarde(indice, cache);
+            }
+
+            final int hash = cache.hash(contexto.pilha, quadro, contexto.globais);
+            final int entrada = cache.procure(hash, contexto.pilha, quadro, contexto.globais);
+
+            if (entrada >= 0) {
+                contexto.topo = quadro;
+
+                return cache.resultado(entrada);
+            }
+
+            final int resultado = funcao.aplique(contexto, quadro);
+
+            // o quadro foi desempilhado, mas os argumentos continuam na pilha:
+            // as chamadas feitas pelo corpo só usam posições acima dele
+            cache.guarde(hash, contexto.pilha, quadro, contexto.globais, resultado);
+
+            return resultado;
+        }
+    }
+}
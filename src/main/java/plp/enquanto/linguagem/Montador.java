@@ -0,0 +1,704 @@
+package plp.enquanto.linguagem;
+
+import static plp.enquanto.linguagem.MaquinaVirtual.*;
+
+import java.util.*;
+
+import plp.enquanto.linguagem.Linguagem.*;
+import plp.enquanto.linguagem.Otimizador.ParaOtimizado;
+
+/**
+ * Traduz o programa para o código da MaquinaVirtual: um int[] com cada
+ * instrução seguida de seus operandos, que são registradores do quadro
+ * corrente, posições das tabelas de constantes e de textos, ou
+ * deslocamentos de salto contados a partir do início da instrução.
+ *
+ * No quadro do programa, os registradores começam pelas globais, na ordem
+ * dos slots, seguidas das constantes, carregadas uma vez no início, e dos
+ * temporários. No quadro de uma função, começam pelos argumentos; as
+ * globais são copiadas de seus registradores no quadro do programa, e as
+ * constantes carregadas a cada uso.
+ *
+ * Expressões devolvem o registrador com seu valor; condições não deixam
+ * valor, só saltam.
+ */
+public class Montador implements Visitor<Integer> {
+    private int[] codigo = new int[256];
+    private int tamanho;
+
+    private final List<Integer> constantes = new ArrayList<Integer>();
+    private final Map<Integer, Integer> posicoesConstantes = new HashMap<Integer, Integer>();
+    private final List<byte[]> textos = new ArrayList<byte[]>();
+    private final Map<Funcao, Integer> funcoes = new LinkedHashMap<Funcao, Integer>();
+
+    // registrador de cada constante no quadro do programa
+    private final Map<Integer, Integer> registrosConstantes = new HashMap<Integer, Integer>();
+
+    // rótulos: a posição de cada um, ou -1, e os saltos que o usam como
+    // pares (posição do operando, início da instrução)
+    private int[] rotulos = new int[16];
+    private int numRotulos;
+    private final List<int[]> saltos = new ArrayList<int[]>();
+
+    private Funcao funcaoAtual;
+    private int temporario;
+    private int maximo;
+
+    // registrador pedido para o valor da expressão visitada, ou -1
+    private int destino = -1;
+
+    // salto pendente da condição visitada
+    private int alvo;
+    private boolean quando;
+
+    public MaquinaVirtual monte(Programa programa) {
+        for (Instrucao instrucao : programa.comandos) {
+            if (instrucao instanceof Funcao)
+                funcoes.put((Funcao) instrucao, funcoes.size());
+        }
+
+        programa.accept(this);
+
+        final int principal = maximo;
+        final int[] entradas = new int[funcoes.size()];
+        final int[] quadros = new int[funcoes.size()];
+        int f = 0;
+
+        for (Funcao funcao : funcoes.keySet()) {
+            entradas[f] = tamanho;
+            quadros[f] = monte(funcao);
+            f++;
+        }
+
+        for (int[] salto : saltos) {
+            codigo[salto[0]] = rotulos[codigo[salto[0]]] - salto[1];
+        }
+
+        final int[] valores = new int[constantes.size()];
+
+        for (int i = 0; i < valores.length; i++) {
+            valores[i] = constantes.get(i);
+        }
+
+        return new MaquinaVirtual(Arrays.copyOf(codigo, tamanho), valores, textos.toArray(new byte[0][]),
+                entradas, quadros, programa.ambiente.slots.size(), principal);
+    }
+
+    // devolve o tamanho do quadro da função
+    private int monte(Funcao funcao) {
+        funcaoAtual = funcao;
+        temporario = funcao.ambiente.slots.size();
+        maximo = temporario;
+
+        emita(RETORNE, valor(funcao.retorno, -1));
+
+        return maximo;
+    }
+
+    private void emita(int... instrucao) {
+        if (tamanho + instrucao.length > codigo.length)
+            codigo = Arrays.copyOf(codigo, Math.max(codigo.length * 2, tamanho + instrucao.length));
+
+        System.arraycopy(instrucao, 0, codigo, tamanho, instrucao.length);
+        tamanho += instrucao.length;
+    }
+
+    private int rotulo() {
+        if (numRotulos == rotulos.length)
+            rotulos = Arrays.copyOf(rotulos, rotulos.length * 2);
+
+        rotulos[numRotulos] = -1;
+
+        return numRotulos++;
+    }
+
+    private void marque(int rotulo) {
+        rotulos[rotulo] = tamanho;
+    }
+
+    // instrução cujo último operando é o deslocamento até o rótulo
+    private void salte(int rotulo, int... instrucao) {
+        final int inicio = tamanho;
+
+        emita(instrucao);
+        emita(rotulo);
+        saltos.add(new int[] { tamanho - 1, inicio });
+    }
+
+    private int constante(int valor) {
+        Integer posicao = posicoesConstantes.get(valor);
+
+        if (posicao == null) {
+            posicao = constantes.size();
+            constantes.add(valor);
+            posicoesConstantes.put(valor, posicao);
+        }
+
+        return posicao;
+    }
+
+    private int temporario() {
+        maximo = Math.max(maximo, temporario + 1);
+
+        return temporario++;
+    }
+
+    private int destino() {
+        final int registro = destino;
+
+        destino = -1;
+
+        return registro >= 0 ? registro : temporario();
+    }
+
+    // avalia a expressão no registrador pedido, ou em qualquer um se -1
+    private int valor(Expressao exp, int registro) {
+        destino = registro;
+
+        final int resultado = exp.accept(this);
+
+        destino = -1;
+
+        if (registro >= 0 && resultado != registro) {
+            emita(MOVA, registro, resultado);
+
+            return registro;
+        }
+
+        return resultado;
+    }
+
+    private void salte(Bool condicao, boolean quando, int rotulo) {
+        this.alvo = rotulo;
+        this.quando = quando;
+
+        condicao.accept(this);
+    }
+
+    private void comando(Comando comando) {
+        final int inicio = temporario;
+
+        comando.accept(this);
+        temporario = inicio;
+    }
+
+    @Override
+    public Integer visitPrograma(Programa programa) {
+        final int globais = programa.ambiente.slots.size();
+        final Set<Integer> valores = new TreeSet<Integer>();
+
+        programa.accept(new Transformador() {
+            @Override
+            public No visitInteiro(Inteiro inteiro) {
+                valores.add(inteiro.valor);
+
+                return inteiro;
+            }
+
+            // os corpos das funções carregam suas constantes a cada uso
+            @Override
+            public No visitFuncao(Funcao funcao) {
+                return funcao;
+            }
+        });
+
+        temporario = globais;
+
+        for (int valor : valores) {
+            registrosConstantes.put(valor, temporario);
+            emita(CONSTANTE, temporario++, constante(valor));
+        }
+
+        maximo = temporario;
+
+        for (Instrucao instrucao : programa.comandos) {
+            if (instrucao instanceof Comando)
+                comando((Comando) instrucao);
+        }
+
+        emita(PARE);
+
+        return null;
+    }
+
+    // quando o corpo não atribui a variável, ela mesma é o contador; com
+    // o limite invariante, o incremento e o teste são uma só instrução
+    @Override
+    public Integer visitPara(Para para) {
+        final boolean ateInvariante = para instanceof ParaOtimizado && ((ParaOtimizado) para).ateInvariante;
+        final boolean contadorLocal = para instanceof ParaOtimizado && ((ParaOtimizado) para).contadorLocal;
+        final Set<Integer> escritas = Dependencias.escritas(para.faca);
+        final int variavel = registro(para.id);
+        final boolean propria = para.id.global && escritas != null && !escritas.contains(para.id.slot);
+        final boolean copia = !propria && !contadorLocal;
+        final int contador = valor(para.de, propria ? variavel : temporario());
+
+        if (copia)
+            emita(MOVA, variavel, contador);
+
+        final int fim = ateInvariante ? valor(para.ate, -1) : -1;
+        final int corpo = rotulo();
+        final int teste = rotulo();
+        final int saida = rotulo();
+
+        if (ateInvariante && !copia) {
+            salte(saida, SE_MENOR, fim, contador);
+            marque(corpo);
+            comando(para.faca);
+            salte(corpo, PROXIMO, contador, valor(para.passo, -1), fim);
+        } else {
+            salte(teste, SALTE);
+            marque(corpo);
+            comando(para.faca);
+            emita(SOME, contador, contador, valor(para.passo, -1));
+
+            if (copia)
+                emita(MOVA, variavel, contador);
+
+            marque(teste);
+            salte(corpo, SE_MENOR_IGUAL, contador, ateInvariante ? fim : valor(para.ate, -1));
+        }
+
+        marque(saida);
+
+        if (!propria && contadorLocal)
+            emita(MOVA, variavel, contador);
+
+        return null;
+    }
+
+    @Override
+    public Integer visitSenaoSe(SenaoSe senaoSe) {
+        comando(senaoSe.entao);
+
+        return null;
+    }
+
+    @Override
+    public Integer visitSe(Se se) {
+        final int fim = rotulo();
+        int proximo = rotulo();
+
+        salte(se.condicao, false, proximo);
+        comando(se.entao);
+        salte(fim, SALTE);
+
+        for (SenaoSe senaoSe : se.listaSenaoSe) {
+            marque(proximo);
+            proximo = rotulo();
+
+            salte(senaoSe.condicao, false, proximo);
+            comando(senaoSe);
+            salte(fim, SALTE);
+        }
+
+        marque(proximo);
+        comando(se.senao);
+        marque(fim);
+
+        return null;
+    }
+
+    @Override
+    public Integer visitSkip(Skip skip) {
+        return null;
+    }
+
+    @Override
+    public Integer visitEscreva(Escreva escreva) {
+        emita(ESCREVA, valor(escreva.exp, -1));
+
+        return null;
+    }
+
+    // a mesma escolha de tabela densa ou esparsa da Escolha; a esparsa
+    // guarda as chaves ordenadas, para busca binária
+    @Override
+    public Integer visitEscolha(Escolha escolha) {
+        final int registro = valor(escolha.padrao, -1);
+        final int n = escolha.chaves.length;
+        final int fim = rotulo();
+        final int outro = rotulo();
+        final int[] casos = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            casos[i] = rotulo();
+        }
+
+        int min = 0;
+        int max = -1;
+
+        for (int i = 0; i < n; i++) {
+            min = i == 0 ? escolha.chaves[i] : Math.min(min, escolha.chaves[i]);
+            max = i == 0 ? escolha.chaves[i] : Math.max(max, escolha.chaves[i]);
+        }
+
+        final int inicio = tamanho;
+
+        if (n > 0 && (long) max - min < Math.max(64, 2 * n)) {
+            final int[] tabela = new int[max - min + 1];
+
+            Arrays.fill(tabela, outro);
+
+            for (int i = 0; i < n; i++) {
+                tabela[escolha.chaves[i] - min] = casos[i];
+            }
+
+            emita(TABELA, registro, min, tabela.length);
+
+            for (int rotulo : tabela) {
+                desloque(rotulo, inicio);
+            }
+        } else {
+            final Integer[] ordem = new Integer[n];
+
+            for (int i = 0; i < n; i++) {
+                ordem[i] = i;
+            }
+
+            Arrays.sort(ordem, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Integer.compare(escolha.chaves[a], escolha.chaves[b]);
+                }
+            });
+
+            emita(ESPARSA, registro, n);
+
+            for (int i : ordem) {
+                emita(escolha.chaves[i]);
+            }
+
+            for (int i : ordem) {
+                desloque(casos[i], inicio);
+            }
+        }
+
+        desloque(outro, inicio);
+
+        for (int i = 0; i < n; i++) {
+            marque(casos[i]);
+            comando(escolha.comandos[i]);
+            salte(fim, SALTE);
+        }
+
+        marque(outro);
+        comando(escolha.outro);
+        marque(fim);
+
+        return null;
+    }
+
+    // operando de tabela: deslocamento até o rótulo a partir de inicio
+    private void desloque(int rotulo, int inicio) {
+        emita(rotulo);
+        saltos.add(new int[] { tamanho - 1, inicio });
+    }
+
+    // a condição é testada no fim do laço, e só ela se repete
+    @Override
+    public Integer visitEnquanto(Enquanto enquanto) {
+        final int corpo = rotulo();
+        final int teste = rotulo();
+
+        salte(teste, SALTE);
+        marque(corpo);
+        comando(enquanto.faca);
+        marque(teste);
+        salte(enquanto.condicao, true, corpo);
+
+        return null;
+    }
+
+    @Override
+    public Integer visitExiba(Exiba exiba) {
+        emita(EXIBA, textos.size());
+        textos.add(Saida.codifique(exiba.texto));
+
+        return null;
+    }
+
+    @Override
+    public Integer visitBloco(Bloco bloco) {
+        for (Comando comando : bloco.comandos) {
+            comando(comando);
+        }
+
+        return null;
+    }
+
+    // os argumentos ocupam registradores consecutivos acima de todos os
+    // que estão em uso, e são os primeiros do quadro da função chamada
+    @Override
+    public Integer visitChamadaFuncao(ChamadaFuncao chamada) {
+        final int registro = destino();
+        final int primeiro = temporario;
+
+        for (int i = 0; i < chamada.params.size(); i++) {
+            temporario();
+        }
+
+        for (int i = 0; i < chamada.params.size(); i++) {
+            valor(chamada.params.get(i), primeiro + i);
+        }
+
+        if (chamada.funcao == null)
+            emita(INDEFINIDA);
+        else
+            emita(CHAME, registro, primeiro, funcoes.get(chamada.funcao));
+
+        temporario = primeiro;
+
+        return registro;
+    }
+
+    @Override
+    public Integer visitFuncao(Funcao funcao) {
+        return null;
+    }
+
+    @Override
+    public Integer visitAtribuicao(Atribuicao atribuicao) {
+        valor(atribuicao.exp, atribuicao.slot);
+
+        return null;
+    }
+
+    @Override
+    public Integer visitInteiro(Inteiro inteiro) {
+        final Integer registro = funcaoAtual == null ? registrosConstantes.get(inteiro.valor) : null;
+
+        if (registro != null && destino < 0)
+            return registro;
+
+        final int d = destino();
+
+        if (registro != null)
+            emita(MOVA, d, registro);
+        else
+            emita(CONSTANTE, d, constante(inteiro.valor));
+
+        return d;
+    }
+
+    // no quadro do programa as globais são registradores; numa função,
+    // uma global lida é copiada para um temporário
+    private int registro(Id id) {
+        if (id.global && funcaoAtual != null) {
+            final int d = destino();
+
+            emita(GLOBAL, d, id.slot);
+
+            return d;
+        }
+
+        return id.slot;
+    }
+
+    @Override
+    public Integer visitId(Id id) {
+        return registro(id);
+    }
+
+    @Override
+    public Integer visitLeia(Leia leia) {
+        final int d = destino();
+
+        emita(LEIA, d);
+
+        return d;
+    }
+
+    @Override
+    public Integer visitExpNeg(ExpNeg expNeg) {
+        final int d = destino();
+
+        emita(exata(expNeg) ? NEGUE_EXATA : NEGUE, d, valor(expNeg.exp, -1));
+
+        return d;
+    }
+
+    private static boolean exata(Expressao exp) {
+        return exp instanceof Verificador.Verificada;
+    }
+
+    // os operandos vão para temporários acima do destino, que pode ser
+    // uma global ainda lida por eles
+    private int binaria(ExpBin exp, int instrucao, int exata) {
+        final int d = destino();
+        final int esq = valor(exp.esq, -1);
+        final int dir = valor(exp.dir, -1);
+
+        emita(exata(exp) ? exata : instrucao, d, esq, dir);
+
+        return d;
+    }
+
+    @Override
+    public Integer visitExpSoma(ExpSoma expSoma) {
+        return binaria(expSoma, SOME, SOME_EXATA);
+    }
+
+    @Override
+    public Integer visitExpSub(ExpSub expSub) {
+        return binaria(expSub, SUBTRAIA, SUBTRAIA_EXATA);
+    }
+
+    @Override
+    public Integer visitExpMul(ExpMul expMul) {
+        return binaria(expMul, MULTIPLIQUE, MULTIPLIQUE_EXATA);
+    }
+
+    // como na ExpDiv, o divisor é avaliado primeiro
+    @Override
+    public Integer visitExpDiv(ExpDiv expDiv) {
+        final int d = destino();
+        final int dir = valor(expDiv.dir, -1);
+        final int esq = valor(expDiv.esq, -1);
+
+        emita(exata(expDiv) ? DIVIDA_EXATA : DIVIDA, d, esq, dir);
+
+        return d;
+    }
+
+    @Override
+    public Integer visitExpPot(ExpPot expPot) {
+        return binaria(expPot, POTENCIA, POTENCIA_EXATA);
+    }
+
+    @Override
+    public Integer visitBooleano(Booleano booleano) {
+        if (booleano.valor == quando)
+            salte(alvo, SALTE);
+
+        return null;
+    }
+
+    // salta se a relação entre os operandos for igual a quando; a negação
+    // de cada relação é uma das quatro instruções com os operandos trocados
+    private Integer relacional(ExpRel exp, int verdadeira, int falsa, boolean troque) {
+        final int rotulo = alvo;
+        final boolean quando = this.quando;
+        final int esq = valor(exp.esq, -1);
+        final int dir = valor(exp.dir, -1);
+
+        if (quando)
+            salte(rotulo, verdadeira, troque ? dir : esq, troque ? esq : dir);
+        else
+            salte(rotulo, falsa, troque ? esq : dir, troque ? dir : esq);
+
+        return null;
+    }
+
+    @Override
+    public Integer visitExpDesigual(ExpDesigual expDesigual) {
+        final int rotulo = alvo;
+        final boolean quando = this.quando;
+        final int esq = valor(expDesigual.esq, -1);
+        final int dir = valor(expDesigual.dir, -1);
+
+        salte(rotulo, quando ? SE_DIFERENTE : SE_IGUAL, esq, dir);
+
+        return null;
+    }
+
+    @Override
+    public Integer visitExpIgual(ExpIgual expIgual) {
+        final int rotulo = alvo;
+        final boolean quando = this.quando;
+        final int esq = valor(expIgual.esq, -1);
+        final int dir = valor(expIgual.dir, -1);
+
+        salte(rotulo, quando ? SE_IGUAL : SE_DIFERENTE, esq, dir);
+
+        return null;
+    }
+
+    @Override
+    public Integer visitExpMaior(ExpMaior expMaior) {
+        return relacional(expMaior, SE_MENOR, SE_MENOR_IGUAL, true);
+    }
+
+    @Override
+    public Integer visitExpMaiorIgual(ExpMaiorIgual expMaiorIgual) {
+        return relacional(expMaiorIgual, SE_MENOR_IGUAL, SE_MENOR, true);
+    }
+
+    @Override
+    public Integer visitExpMenor(ExpMenor expMenor) {
+        return relacional(expMenor, SE_MENOR, SE_MENOR_IGUAL, false);
+    }
+
+    @Override
+    public Integer visitExpMenorIgual(ExpMenorIgual expMenorIgual) {
+        return relacional(expMenorIgual, SE_MENOR_IGUAL, SE_MENOR, false);
+    }
+
+    @Override
+    public Integer visitNaoLogico(NaoLogico naoLogico) {
+        salte(naoLogico.b, !quando, alvo);
+
+        return null;
+    }
+
+    @Override
+    public Integer visitELogico(ELogico eLogico) {
+        final int rotulo = alvo;
+
+        if (quando) {
+            final int falso = rotulo();
+
+            salte(eLogico.esq, false, falso);
+            salte(eLogico.dir, true, rotulo);
+            marque(falso);
+        } else {
+            salte(eLogico.esq, false, rotulo);
+            salte(eLogico.dir, false, rotulo);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Integer visitOuLogico(OuLogico ouLogico) {
+        final int rotulo = alvo;
+
+        if (quando) {
+            salte(ouLogico.esq, true, rotulo);
+            salte(ouLogico.dir, true, rotulo);
+        } else {
+            final int verdadeiro = rotulo();
+
+            salte(ouLogico.esq, true, verdadeiro);
+            salte(ouLogico.dir, false, rotulo);
+            marque(verdadeiro);
+        }
+
+        return null;
+    }
+
+    // o único caso em que uma condição vira valor: 0 ou 1 em cada lado
+    @Override
+    public Integer visitXorLogico(XorLogico xorLogico) {
+        final int rotulo = alvo;
+        final boolean quando = this.quando;
+        final int esq = booleano(xorLogico.esq);
+        final int dir = booleano(xorLogico.dir);
+
+        salte(rotulo, quando ? SE_DIFERENTE : SE_IGUAL, esq, dir);
+
+        return null;
+    }
+
+    private int booleano(Bool condicao) {
+        final int registro = temporario();
+        final int fim = rotulo();
+
+        emita(CONSTANTE, registro, constante(1));
+        salte(condicao, true, fim);
+        emita(CONSTANTE, registro, constante(0));
+        marque(fim);
+
+        return registro;
+    }
+}
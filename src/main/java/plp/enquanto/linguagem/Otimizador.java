@@ -0,0 +1,402 @@
+package plp.enquanto.linguagem;
+
+import java.util.Set;
+
+import plp.enquanto.linguagem.Linguagem.*;
+
+/**
+ * Dobra subárvores constantes e simplifica identidades algébricas e lógicas
+ * ({@code x*1}, {@code x+0}, {@code nao nao b}, {@code verdadeiro e b}, ...).
+ *
+ * Uma subexpressão só é descartada quando avaliá-la não tem efeito: sem
+ * leia, sem chamadas de função e sem divisões ou operações verificadas,
+ * que podem falhar. Divisões por uma constante zero ficam para a execução.
+ *
+ * Nos laços para, os limites que o corpo não pode alterar são avaliados uma
+ * vez só, e o contador fica numa variável Java quando nada no laço o lê;
+ * veja ParaOtimizado.
+ */
+public class Otimizador extends Transformador {
+    private int removidos;
+    private final Dependencias dependencias = new Dependencias();
+
+    @Override
+    public Programa transforme(Programa programa) {
+        final int antes = Contagem.nos(programa);
+
+        super.transforme(programa);
+        removidos += antes - Contagem.nos(programa);
+
+        return programa;
+    }
+
+    // soma de todos os programas transformados
+    public int getRemovidos() {
+        return removidos;
+    }
+
+    private static class Contagem extends Transformador {
+        private int nos;
+
+        static int nos(Programa programa) {
+            final Contagem contagem = new Contagem();
+
+            contagem.transforme(programa);
+
+            return contagem.nos;
+        }
+
+        @Override
+        protected Expressao expressao(Expressao exp) {
+            nos++;
+            return super.expressao(exp);
+        }
+
+        @Override
+        protected Bool bool(Bool bool) {
+            nos++;
+            return super.bool(bool);
+        }
+
+        @Override
+        protected Comando comando(Comando comando) {
+            nos++;
+            return super.comando(comando);
+        }
+
+        @Override
+        protected Instrucao instrucao(Instrucao instrucao) {
+            nos++;
+            return super.instrucao(instrucao);
+        }
+    }
+
+    private static boolean constante(Expressao exp) {
+        return exp instanceof Inteiro;
+    }
+
+    private static boolean constante(Expressao exp, int valor) {
+        return exp instanceof Inteiro && ((Inteiro) exp).valor == valor;
+    }
+
+    private static boolean constante(Bool bool) {
+        return bool instanceof Booleano;
+    }
+
+    private static boolean constante(Bool bool, boolean valor) {
+        return bool instanceof Booleano && ((Booleano) bool).valor == valor;
+    }
+
+    // as operações verificadas podem falhar, como a divisão
+    static boolean puro(Expressao exp) {
+        if (exp instanceof Verificador.Verificada)
+            return false;
+        if (exp instanceof Inteiro || exp instanceof Id)
+            return true;
+        if (exp instanceof ExpNeg)
+            return puro(((ExpNeg) exp).exp);
+        if (exp instanceof ExpBin && !(exp instanceof ExpDiv))
+            return puro(((ExpBin) exp).esq) && puro(((ExpBin) exp).dir);
+
+        return false;
+    }
+
+    static boolean puro(Bool bool) {
+        if (bool instanceof Booleano)
+            return true;
+        if (bool instanceof ExpRel)
+            return puro(((ExpRel) bool).esq) && puro(((ExpRel) bool).dir);
+        if (bool instanceof NaoLogico)
+            return puro(((NaoLogico) bool).b);
+        if (bool instanceof ELogico)
+            return puro(((ELogico) bool).esq) && puro(((ELogico) bool).dir);
+        if (bool instanceof OuLogico)
+            return puro(((OuLogico) bool).esq) && puro(((OuLogico) bool).dir);
+        if (bool instanceof XorLogico)
+            return puro(((XorLogico) bool).esq) && puro(((XorLogico) bool).dir);
+
+        return false;
+    }
+
+    // uma operação verificada que estoura fica na árvore, e o erro só
+    // acontece se a execução chegar a ela
+    private static Expressao dobre(Expressao exp) {
+        try {
+            return new Inteiro(exp.valor(null));
+        } catch (ArithmeticException e) {
+            return exp;
+        }
+    }
+
+    @Override
+    protected No visitExpBin(ExpBin exp) {
+        super.visitExpBin(exp);
+
+        if (constante(exp.esq) && constante(exp.dir) && !(exp instanceof ExpDiv && constante(exp.dir, 0)))
+            // operandos constantes: a avaliação não usa o contexto
+            return dobre(exp);
+
+        return exp;
+    }
+
+    @Override
+    public No visitExpSoma(ExpSoma expSoma) {
+        final No exp = visitExpBin(expSoma);
+
+        if (exp != expSoma)
+            return exp;
+        if (constante(expSoma.dir, 0))
+            return expSoma.esq;
+        if (constante(expSoma.esq, 0))
+            return expSoma.dir;
+
+        return expSoma;
+    }
+
+    @Override
+    public No visitExpSub(ExpSub expSub) {
+        final No exp = visitExpBin(expSub);
+
+        if (exp != expSub)
+            return exp;
+        if (constante(expSub.dir, 0))
+            return expSub.esq;
+
+        return expSub;
+    }
+
+    @Override
+    public No visitExpMul(ExpMul expMul) {
+        final No exp = visitExpBin(expMul);
+
+        if (exp != expMul)
+            return exp;
+        if (constante(expMul.dir, 1))
+            return expMul.esq;
+        if (constante(expMul.esq, 1))
+            return expMul.dir;
+        if ((constante(expMul.dir, 0) && puro(expMul.esq)) || (constante(expMul.esq, 0) && puro(expMul.dir)))
+            return new Inteiro(0);
+
+        return expMul;
+    }
+
+    @Override
+    public No visitExpDiv(ExpDiv expDiv) {
+        final No exp = visitExpBin(expDiv);
+
+        if (exp != expDiv)
+            return exp;
+        if (constante(expDiv.dir, 1))
+            return expDiv.esq;
+
+        return expDiv;
+    }
+
+    @Override
+    public No visitExpPot(ExpPot expPot) {
+        final No exp = visitExpBin(expPot);
+
+        if (exp != expPot)
+            return exp;
+        if (constante(expPot.dir, 1))
+            return expPot.esq;
+        if (constante(expPot.dir, 0) && puro(expPot.esq))
+            return new Inteiro(1);
+
+        return expPot;
+    }
+
+    @Override
+    public No visitExpNeg(ExpNeg expNeg) {
+        super.visitExpNeg(expNeg);
+
+        if (constante(expNeg.exp))
+            return dobre(expNeg);
+        if (expNeg.exp instanceof ExpNeg)
+            return ((ExpNeg) expNeg.exp).exp;
+
+        return expNeg;
+    }
+
+    @Override
+    protected No visitExpRel(ExpRel exp) {
+        super.visitExpRel(exp);
+
+        if (constante(exp.esq) && constante(exp.dir))
+            return new Booleano(exp.valor(null));
+
+        return exp;
+    }
+
+    @Override
+    public No visitNaoLogico(NaoLogico naoLogico) {
+        super.visitNaoLogico(naoLogico);
+
+        if (constante(naoLogico.b))
+            return new Booleano(naoLogico.valor(null));
+        if (naoLogico.b instanceof NaoLogico)
+            return ((NaoLogico) naoLogico.b).b;
+
+        return naoLogico;
+    }
+
+    @Override
+    public No visitELogico(ELogico eLogico) {
+        super.visitELogico(eLogico);
+
+        if (constante(eLogico.esq, false))
+            return eLogico.esq;
+        if (constante(eLogico.esq, true))
+            return eLogico.dir;
+        if (constante(eLogico.dir, true))
+            return eLogico.esq;
+        if (constante(eLogico.dir, false) && puro(eLogico.esq))
+            return eLogico.dir;
+
+        return eLogico;
+    }
+
+    @Override
+    public No visitOuLogico(OuLogico ouLogico) {
+        super.visitOuLogico(ouLogico);
+
+        if (constante(ouLogico.esq, true))
+            return ouLogico.esq;
+        if (constante(ouLogico.esq, false))
+            return ouLogico.dir;
+        if (constante(ouLogico.dir, false))
+            return ouLogico.esq;
+        if (constante(ouLogico.dir, true) && puro(ouLogico.esq))
+            return ouLogico.dir;
+
+        return ouLogico;
+    }
+
+    @Override
+    public No visitXorLogico(XorLogico xorLogico) {
+        super.visitXorLogico(xorLogico);
+
+        if (constante(xorLogico.esq) && constante(xorLogico.dir))
+            return new Booleano(xorLogico.valor(null));
+        if (constante(xorLogico.esq, false))
+            return xorLogico.dir;
+        if (constante(xorLogico.dir, false))
+            return xorLogico.esq;
+        if (constante(xorLogico.esq, true))
+            return new NaoLogico(xorLogico.dir);
+        if (constante(xorLogico.dir, true))
+            return new NaoLogico(xorLogico.esq);
+
+        return xorLogico;
+    }
+
+    @Override
+    public No visitPara(Para para) {
+        super.visitPara(para);
+
+        if (para instanceof ParaOtimizado || !para.id.global)
+            return para;
+
+        final Set<Integer> escritas = Dependencias.escritas(para.faca);
+
+        if (escritas == null)
+            return para;
+
+        // se o corpo escreve o contador, essa escrita fica na variável
+        // quando o corpo lança; a cópia local a sobrescreveria
+        final boolean corpoEscreveContador = escritas.contains(para.id.slot);
+
+        // o próprio laço escreve o contador a cada iteração
+        escritas.add(para.id.slot);
+
+        final Dependencias.Leituras ate = dependencias.leituras(para.ate);
+        final Dependencias.Leituras passo = dependencias.leituras(para.passo);
+
+        final boolean ateInvariante = invariante(ate, escritas);
+        final boolean passoInvariante = invariante(passo, escritas);
+
+        final int contador = para.id.slot;
+        final boolean contadorLocal = !corpoEscreveContador
+                && !dependencias.leituras(para.faca).globais.contains(contador)
+                && !ate.globais.contains(contador) && !passo.globais.contains(contador)
+                && !ate.desconhecida && !passo.desconhecida;
+
+        if (!ateInvariante && !passoInvariante && !contadorLocal)
+            return para;
+
+        return new ParaOtimizado(para, ateInvariante, passoInvariante, contadorLocal);
+    }
+
+    private static boolean invariante(Dependencias.Leituras leituras, Set<Integer> escritas) {
+        if (!leituras.pura())
+            return false;
+
+        for (int slot : leituras.globais) {
+            if (escritas.contains(slot))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Laço para com os limites avaliados uma vez só, quando são
+     * invariantes: sem leia e sem ler variáveis que o laço escreve. ate é
+     * avaliado antes da primeira comparação, como antes, e passo depois da
+     * primeira iteração, de modo que um laço que não executa continua sem
+     * avaliá-lo e um erro na avaliação acontece no mesmo ponto.
+     *
+     * Com contadorLocal, nem o corpo nem os limites leem ou escrevem o
+     * contador, e ele só é gravado na variável quando o laço termina, normalmente ou não,
+     * com o mesmo valor que teria.
+     */
+    static final class ParaOtimizado extends Para {
+        final boolean ateInvariante;
+        final boolean passoInvariante;
+        final boolean contadorLocal;
+
+        ParaOtimizado(Para para, boolean ateInvariante, boolean passoInvariante, boolean contadorLocal) {
+            super(para.id, para.de, para.ate, para.passo, para.faca);
+
+            this.linha = para.linha;
+            this.ateInvariante = ateInvariante;
+            this.passoInvariante = passoInvariante;
+            this.contadorLocal = contadorLocal;
+        }
+
+        @Override
+        public void execute(Contexto contexto) {
+            int i = de.valor(contexto);
+
+            if (!contadorLocal)
+                id.setValor(contexto, i);
+
+            try {
+                final int fim = ateInvariante ? ate.valor(contexto) : 0;
+                int incremento = 0;
+                boolean avaliado = false;
+
+                while (i <= (ateInvariante ? fim : ate.valor(contexto))) {
+                    contexto.iteracoes++;
+                    faca.execute(contexto);
+
+                    if (!passoInvariante) {
+                        incremento = passo.valor(contexto);
+                    } else if (!avaliado) {
+                        incremento = passo.valor(contexto);
+                        avaliado = true;
+                    }
+
+                    i += incremento;
+
+                    if (!contadorLocal)
+                        id.setValor(contexto, i);
+                }
+            } finally {
+                if (contadorLocal)
+                    id.setValor(contexto, i);
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package plp.enquanto.linguagem;
+
+import java.util.*;
+
+import plp.enquanto.linguagem.Linguagem.*;
+
+/**
+ * Envolve cada comando e cada chamada de função num nó que conta suas
+ * execuções e mede seu tempo, agrupando os comandos pela linha do fonte e
+ * as chamadas pela função chamada. Sem o perfil a árvore não tem esses nós,
+ * e a execução não paga nada por eles.
+ *
+ * O tempo próprio de uma linha exclui o das linhas e chamadas medidas
+ * dentro dela; o total inclui, mas conta só a ativação mais externa quando
+ * a linha, ou a função, aparece de novo dentro de si mesma. O tempo de uma
+ * chamada inclui a avaliação dos argumentos.
+ *
+ * Deve ser o último transformador aplicado: os nós de medida, como os do
+ * Especializador, são transparentes aos visitantes, e um transformador
+ * posterior os descartaria. As medidas pertencem ao Contexto de cada
+ * execução.
+ */
+public class Perfilador extends Transformador {
+    private final Map<Integer, Integer> linhas = new TreeMap<Integer, Integer>();
+    private final Map<Funcao, Integer> funcoes = new LinkedHashMap<Funcao, Integer>();
+    private int tamanho;
+
+    private int indice(Integer linha) {
+        Integer indice = linhas.get(linha);
+
+        if (indice == null) {
+            indice = tamanho++;
+            linhas.put(linha, indice);
+        }
+
+        return indice;
+    }
+
+    private int indice(Funcao funcao) {
+        Integer indice = funcoes.get(funcao);
+
+        if (indice == null) {
+            indice = tamanho++;
+            funcoes.put(funcao, indice);
+        }
+
+        return indice;
+    }
+
+    // os filhos são visitados pelos originais, mas cada nó continua no pai
+    // como estava, especializado ou não
+    @Override
+    protected Expressao expressao(Expressao exp) {
+        final No original = exp.accept(this);
+
+        if (original instanceof ChamadaFuncao && ((ChamadaFuncao) original).funcao != null)
+            return new ChamadaMedida(exp, indice(((ChamadaFuncao) original).funcao), this);
+
+        return exp;
+    }
+
+    @Override
+    protected Bool bool(Bool bool) {
+        bool.accept(this);
+
+        return bool;
+    }
+
+    // blocos só agrupam; medem-se os comandos dentro deles
+    @Override
+    protected Comando comando(Comando comando) {
+        final No original = comando.accept(this);
+
+        if (original instanceof Posicionado && !(original instanceof Bloco))
+            return new ComandoMedido(comando, indice(((Posicionado) original).linha), this);
+
+        return comando;
+    }
+
+    @Override
+    protected Instrucao instrucao(Instrucao instrucao) {
+        if (instrucao instanceof Comando)
+            return comando((Comando) instrucao);
+
+        instrucao.accept(this);
+
+        return instrucao;
+    }
+
+    private Medidas medidas(Contexto contexto) {
+        if (contexto.medidas == null)
+            contexto.medidas = new Medidas(tamanho);
+
+        return contexto.medidas;
+    }
+
+    public String relatorio(Contexto contexto, List<String> fonte) {
+        final Medidas medidas = medidas(contexto);
+        final StringBuilder relatorio = new StringBuilder();
+
+        long execucoes = 0;
+        long tempo = 0;
+
+        for (int i = 0; i < tamanho; i++) {
+            tempo += medidas.proprio[i];
+        }
+
+        for (int indice : linhas.values()) {
+            execucoes += medidas.execucoes[indice];
+        }
+
+        relatorio.append(String.format("Perfil: %d comandos executados em %.3f ms.%n", execucoes, tempo / 1e6));
+        relatorio.append(String.format("%6s %12s %12s %6s %12s  %s%n",
+                "linha", "execuções", "próprio ms", "%", "total ms", "fonte"));
+
+        final List<Map.Entry<Integer, Integer>> quentes = new ArrayList<Map.Entry<Integer, Integer>>(linhas.entrySet());
+
+        Collections.sort(quentes, new Comparator<Map.Entry<Integer, Integer>>() {
+            @Override
+            public int compare(Map.Entry<Integer, Integer> a, Map.Entry<Integer, Integer> b) {
+                return Long.compare(medidas.proprio[b.getValue()], medidas.proprio[a.getValue()]);
+            }
+        });
+
+        for (Map.Entry<Integer, Integer> linha : quentes) {
+            final int i = linha.getValue();
+
+            if (medidas.execucoes[i] == 0)
+                continue;
+
+            final int n = linha.getKey();
+            final String texto = fonte != null && n >= 1 && n <= fonte.size() ? fonte.get(n - 1).trim() : "";
+
+            relatorio.append(String.format("%6d %12d %12.3f %6.1f %12.3f  %s%n", n, medidas.execucoes[i],
+                    medidas.proprio[i] / 1e6, tempo == 0 ? 0.0 : 100.0 * medidas.proprio[i] / tempo,
+                    medidas.total[i] / 1e6, texto));
+        }
+
+        if (!funcoes.isEmpty()) {
+            relatorio.append(String.format("%-20s %12s %12s %6s %12s%n", "função", "chamadas", "próprio ms", "%", "total ms"));
+
+            for (Map.Entry<Funcao, Integer> funcao : funcoes.entrySet()) {
+                final int i = funcao.getValue();
+
+                relatorio.append(String.format("%-20s %12d %12.3f %6.1f %12.3f%n", funcao.getKey(), medidas.execucoes[i],
+                        medidas.proprio[i] / 1e6, tempo == 0 ? 0.0 : 100.0 * medidas.proprio[i] / tempo,
+                        medidas.total[i] / 1e6));
+            }
+        }
+
+        return relatorio.toString();
+    }
+
+    /**
+     * Contagens e tempos de uma execução, por posição. filhos acumula o
+     * tempo dos nós medidos dentro do nó corrente, para descontá-lo do
+     * tempo próprio dele.
+     */
+    static final class Medidas {
+        final long[] execucoes;
+        final long[] proprio;
+        final long[] total;
+        final int[] ativos;
+
+        long filhos;
+
+        Medidas(int tamanho) {
+            this.execucoes = new long[tamanho];
+            this.proprio = new long[tamanho];
+            this.total = new long[tamanho];
+            this.ativos = new int[tamanho];
+        }
+
+        // devolve o tempo dos filhos do nó de fora, a restaurar na saída
+        long entre(int indice) {
+            final long externos = filhos;
+
+            filhos = 0;
+            ativos[indice]++;
+
+            return externos;
+        }
+
+        void saia(int indice, long externos, long tempo) {
+            execucoes[indice]++;
+            proprio[indice] += tempo - filhos;
+
+            if (--ativos[indice] == 0)
+                total[indice] += tempo;
+
+            filhos = externos + tempo;
+        }
+    }
+
+    static final class ComandoMedido implements Comando {
+        final Comando comando;
+        final int indice;
+        final Perfilador perfilador;
+
+        ComandoMedido(Comando comando, int indice, Perfilador perfilador) {
+            this.comando = comando;
+            this.indice = indice;
+            this.perfilador = perfilador;
+        }
+
+        @Override
+        public void execute(Contexto contexto) {
+            final Medidas medidas = perfilador.medidas(contexto);
+            final long externos = medidas.entre(indice);
+            final long inicio = System.nanoTime();
+
+            try {
+                comando.execute(contexto);
+            } finally {
+                medidas.saia(indice, externos, System.nanoTime() - inicio);
+            }
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return comando.accept(visitor);
+        }
+    }
+
+    static final class ChamadaMedida implements Expressao {
+        final Expressao chamada;
+        final int indice;
+        final Perfilador perfilador;
+
+        ChamadaMedida(Expressao chamada, int indice, Perfilador perfilador) {
+            this.chamada = chamada;
+            this.indice = indice;
+            this.perfilador = perfilador;
+        }
+
+        @Override
+        public int valor(Contexto contexto) {
+            final Medidas medidas = perfilador.medidas(contexto);
+            final long externos = medidas.entre(indice);
+            final long inicio = System.nanoTime();
+
+            try {
+                return chamada.valor(contexto);
+            } finally {
+                medidas.saia(indice, externos, System.nanoTime() - inicio);
+            }
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return chamada.accept(visitor);
+        }
+    }
+}
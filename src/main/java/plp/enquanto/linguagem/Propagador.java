@@ -0,0 +1,691 @@
+package plp.enquanto.linguagem;
+
+import java.util.*;
+
+import plp.enquanto.linguagem.Linguagem.*;
+
+/**
+ * Análise de fluxo de dados sobre os comandos do programa, em duas
+ * passadas.
+ *
+ * A primeira, para a frente, acompanha as globais de valor conhecido em
+ * cada ponto e troca suas leituras pelo valor; o Otimizador, logo depois,
+ * dobra o que ficar constante e conta os nós que removeu. Os ramos de se e
+ * senaose cuja condição fica falsa saem da árvore; uma condição verdadeira
+ * torna o seu ramo o último. Um escolha de valor conhecido vira o caso
+ * escolhido, e um enquanto de condição falsa na entrada deixa de existir.
+ * Nos laços, o estado da entrada é o ponto fixo do da entrada e do fim do
+ * corpo, que é percorrido sem reescrever até estabilizar e só então
+ * reescrito.
+ *
+ * A segunda, para trás, calcula as globais vivas e remove as atribuições
+ * que ninguém lê depois, inclusive as funções chamadas. Só as atribuições
+ * sem efeito saem: sem leia, sem chamadas e sem divisões ou operações
+ * verificadas, que podem falhar.
+ *
+ * As expressões não alteram variáveis; só atribuição e para o fazem. As
+ * funções são avaliadas na chamada, e seus corpos ficam como estão.
+ *
+ * Num trecho da sessão interativa, as globais começam desconhecidas e
+ * nenhuma atribuição é removida: os trechos seguintes, e um erro no meio
+ * deste, veem o que ele atribuiu. Fora dela, as globais começam em zero e
+ * ninguém as lê depois do fim.
+ */
+public class Propagador extends Transformador {
+    private final boolean trecho;
+    private final Dependencias dependencias = new Dependencias();
+
+    // valores conhecidos no ponto corrente, por slot; null quando o ponto
+    // não é alcançável
+    private Map<Integer, Integer> valores;
+    // false enquanto um laço procura seu ponto fixo
+    private boolean reescreve = true;
+    // onde as expressões de valor conhecido são avaliadas
+    private Contexto avaliacao;
+
+    private int ramos;
+    private int atribuicoes;
+
+    public Propagador() {
+        this(false);
+    }
+
+    public Propagador(boolean trecho) {
+        this.trecho = trecho;
+    }
+
+    public int getRamos() {
+        return ramos;
+    }
+
+    public int getAtribuicoes() {
+        return atribuicoes;
+    }
+
+    @Override
+    public Programa transforme(Programa programa) {
+        avaliacao = new Contexto(programa, null, null);
+        valores = new HashMap<Integer, Integer>();
+
+        if (!trecho) {
+            for (int slot = 0; slot < programa.ambiente.slots.size(); slot++) {
+                valores.put(slot, 0);
+            }
+        }
+
+        super.transforme(programa);
+
+        if (!trecho) {
+            final Vivas vivas = new Vivas(dependencias, programa.ambiente.slots.size());
+
+            vivas.transforme(programa);
+            atribuicoes = vivas.removidas;
+        }
+
+        return programa;
+    }
+
+    private static Map<Integer, Integer> copia(Map<Integer, Integer> valores) {
+        return valores == null ? null : new HashMap<Integer, Integer>(valores);
+    }
+
+    // o que vale nos dois caminhos
+    private static Map<Integer, Integer> junte(Map<Integer, Integer> a, Map<Integer, Integer> b) {
+        if (a == null)
+            return copia(b);
+        if (b == null)
+            return copia(a);
+
+        final Map<Integer, Integer> juncao = new HashMap<Integer, Integer>();
+
+        for (Map.Entry<Integer, Integer> valor : a.entrySet()) {
+            if (valor.getValue().equals(b.get(valor.getKey())))
+                juncao.put(valor.getKey(), valor.getValue());
+        }
+
+        return juncao;
+    }
+
+    // a expressão só é avaliada aqui quando não tem efeito e todas as
+    // globais que lê são conhecidas; uma que falharia fica desconhecida
+    private boolean avaliavel(No no) {
+        if (valores == null)
+            return false;
+
+        final Dependencias.Leituras leituras = dependencias.leituras(no);
+
+        if (!leituras.pura() || !leituras.chamadas.isEmpty() || !valores.keySet().containsAll(leituras.globais))
+            return false;
+
+        for (int slot : leituras.globais) {
+            avaliacao.globais[slot] = valores.get(slot);
+        }
+
+        return true;
+    }
+
+    private Integer valor(Expressao exp) {
+        if (exp instanceof Inteiro)
+            return ((Inteiro) exp).valor;
+        if (!avaliavel(exp))
+            return null;
+
+        try {
+            return exp.valor(avaliacao);
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    private Boolean valor(Bool bool) {
+        if (bool instanceof Booleano)
+            return ((Booleano) bool).valor;
+        if (!avaliavel(bool))
+            return null;
+
+        try {
+            return bool.valor(avaliacao);
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    // troca as globais conhecidas pelo valor, sem entrar no corpo das
+    // funções chamadas
+    private final Transformador substituicao = new Transformador() {
+        @Override
+        public No visitId(Id id) {
+            final Integer valor = id.global ? valores.get(id.slot) : null;
+
+            return valor == null ? id : new Inteiro(valor);
+        }
+    };
+
+    @Override
+    protected Expressao expressao(Expressao exp) {
+        if (!reescreve || valores == null)
+            return exp;
+
+        return substituicao.expressao(exp);
+    }
+
+    @Override
+    protected Bool bool(Bool bool) {
+        if (!reescreve || valores == null)
+            return bool;
+
+        return substituicao.bool(bool);
+    }
+
+    @Override
+    public No visitPrograma(Programa programa) {
+        final List<Instrucao> comandos = new ArrayList<Instrucao>();
+
+        for (Instrucao instrucao : programa.comandos) {
+            if (instrucao instanceof Comando)
+                instrucao = comando((Comando) instrucao);
+            if (!(instrucao instanceof Skip))
+                comandos.add(instrucao);
+        }
+
+        programa.comandos = comandos;
+
+        return programa;
+    }
+
+    @Override
+    public No visitFuncao(Funcao funcao) {
+        return funcao;
+    }
+
+    @Override
+    public No visitBloco(Bloco bloco) {
+        final List<Comando> comandos = new ArrayList<Comando>();
+
+        for (Comando comando : bloco.comandos) {
+            comando = comando(comando);
+
+            if (!(comando instanceof Skip))
+                comandos.add(comando);
+        }
+
+        if (reescreve)
+            bloco.comandos = comandos;
+
+        return bloco;
+    }
+
+    @Override
+    public No visitAtribuicao(Atribuicao atribuicao) {
+        final Integer valor = valor(atribuicao.exp);
+
+        atribuicao.exp = expressao(atribuicao.exp);
+
+        if (valores != null && atribuicao.global) {
+            if (valor != null)
+                valores.put(atribuicao.slot, valor);
+            else
+                valores.remove(atribuicao.slot);
+        }
+
+        return atribuicao;
+    }
+
+    @Override
+    public No visitSe(Se se) {
+        if (valores == null)
+            return se;
+
+        final Map<Integer, Integer> entrada = valores;
+        final List<SenaoSe> todos = new ArrayList<SenaoSe>();
+        final List<SenaoSe> mantidos = new ArrayList<SenaoSe>();
+        Map<Integer, Integer> saida = null;
+        Comando senao = null;
+        boolean verdadeira = false;
+        int removidos = 0;
+
+        todos.add(se);
+        todos.addAll(se.listaSenaoSe);
+
+        // as condições não alteram variáveis: todas veem o estado da entrada
+        for (SenaoSe ramo : todos) {
+            valores = entrada;
+
+            if (senao != null) {
+                removidos++;
+                continue;
+            }
+
+            final Boolean condicao = valor(ramo.condicao);
+
+            if (Boolean.FALSE.equals(condicao)) {
+                removidos++;
+                continue;
+            }
+
+            ramo.condicao = bool(ramo.condicao);
+
+            valores = copia(entrada);
+            final Comando entao = comando(ramo.entao);
+            saida = junte(saida, valores);
+
+            if (Boolean.TRUE.equals(condicao)) {
+                // o ramo fica no lugar do senao; os seguintes e o senao
+                // não executam mais
+                senao = entao;
+                verdadeira = true;
+            } else {
+                ramo.entao = entao;
+                mantidos.add(ramo);
+            }
+        }
+
+        if (senao == null) {
+            valores = copia(entrada);
+            senao = comando(se.senao);
+            saida = junte(saida, valores);
+        } else if (!(se.senao instanceof Skip)) {
+            removidos++;
+        }
+
+        valores = saida;
+
+        if (!reescreve)
+            return se;
+
+        if (removidos == 0 && !verdadeira) {
+            se.senao = senao;
+
+            return se;
+        }
+
+        ramos += removidos;
+
+        if (mantidos.isEmpty())
+            return senao;
+
+        final SenaoSe primeiro = mantidos.remove(0);
+
+        if (primeiro == se) {
+            se.listaSenaoSe = mantidos;
+            se.senao = senao;
+
+            return se;
+        }
+
+        final Se novo = new Se(primeiro.condicao, primeiro.entao, mantidos, senao);
+        novo.linha = primeiro.linha;
+
+        return novo;
+    }
+
+    @Override
+    public No visitEscolha(Escolha escolha) {
+        if (valores == null)
+            return escolha;
+
+        final Integer padrao = valor(escolha.padrao);
+
+        if (padrao != null) {
+            Comando escolhido = escolha.outro;
+
+            for (int i = 0; i < escolha.chaves.length; i++) {
+                if (escolha.chaves[i] == padrao) {
+                    escolhido = escolha.comandos[i];
+                    break;
+                }
+            }
+
+            escolhido = comando(escolhido);
+
+            if (!reescreve)
+                return escolha;
+
+            ramos += escolha.comandos.length;
+
+            return escolhido;
+        }
+
+        escolha.padrao = expressao(escolha.padrao);
+
+        final Map<Integer, Integer> entrada = valores;
+        Map<Integer, Integer> saida = null;
+
+        for (int i = 0; i < escolha.comandos.length; i++) {
+            valores = copia(entrada);
+            escolha.comandos[i] = comando(escolha.comandos[i]);
+            saida = junte(saida, valores);
+        }
+
+        valores = copia(entrada);
+        escolha.outro = comando(escolha.outro);
+        valores = junte(saida, valores);
+
+        return escolha;
+    }
+
+    // estado no início de cada iteração: o ponto fixo da junção da entrada
+    // com o fim do corpo. contador é o slot que o laço escreve antes de
+    // voltar ao início, ou -1
+    private Map<Integer, Integer> cabeca(Map<Integer, Integer> entrada, Bool condicao, Comando corpo, int contador) {
+        final boolean reescreve = this.reescreve;
+        Map<Integer, Integer> cabeca = copia(entrada);
+        Map<Integer, Integer> anterior;
+
+        this.reescreve = false;
+
+        do {
+            anterior = cabeca;
+            valores = copia(cabeca);
+
+            if (condicao != null && Boolean.FALSE.equals(valor(condicao))) {
+                valores = null;
+            } else {
+                comando(corpo);
+
+                if (valores != null)
+                    valores.remove(contador);
+            }
+
+            cabeca = junte(entrada, valores);
+        } while (!cabeca.equals(anterior));
+
+        this.reescreve = reescreve;
+
+        return cabeca;
+    }
+
+    @Override
+    public No visitEnquanto(Enquanto enquanto) {
+        if (valores == null)
+            return enquanto;
+
+        final Map<Integer, Integer> cabeca = cabeca(valores, enquanto.condicao, enquanto.faca, -1);
+
+        valores = cabeca;
+
+        final Boolean condicao = valor(enquanto.condicao);
+
+        if (Boolean.FALSE.equals(condicao)) {
+            if (!reescreve)
+                return enquanto;
+
+            ramos++;
+
+            return Linguagem.skip;
+        }
+
+        enquanto.condicao = bool(enquanto.condicao);
+
+        valores = copia(cabeca);
+        enquanto.faca = comando(enquanto.faca);
+
+        // sem condição falsa, só um erro sai do laço
+        valores = Boolean.TRUE.equals(condicao) ? null : cabeca;
+
+        return enquanto;
+    }
+
+    @Override
+    public No visitPara(Para para) {
+        if (valores == null)
+            return para;
+
+        final Integer de = valor(para.de);
+        final int contador = para.id.global ? para.id.slot : -1;
+
+        para.de = expressao(para.de);
+
+        final Map<Integer, Integer> entrada = copia(valores);
+
+        if (de != null && contador >= 0)
+            entrada.put(contador, de);
+        else
+            entrada.remove(contador);
+
+        // passo é avaliado no fim do corpo, onde vale o que vale no início
+        // de toda iteração, exceto o contador, que ali já é desconhecido
+        final Map<Integer, Integer> cabeca = cabeca(entrada, null, para.faca, contador);
+
+        valores = cabeca;
+        para.ate = expressao(para.ate);
+        para.passo = expressao(para.passo);
+
+        valores = copia(cabeca);
+        para.faca = comando(para.faca);
+
+        valores = cabeca;
+
+        return para;
+    }
+
+    /**
+     * A passada para trás: as globais vivas depois de cada comando, e a
+     * remoção das atribuições mortas. Os laços, como na passada para a
+     * frente, procuram o ponto fixo sem reescrever e reescrevem depois.
+     */
+    private static final class Vivas extends Transformador {
+        private final Dependencias dependencias;
+        private final int globais;
+
+        private Set<Integer> vivas = new HashSet<Integer>();
+        private boolean reescreve = true;
+
+        private int removidas;
+
+        Vivas(Dependencias dependencias, int globais) {
+            this.dependencias = dependencias;
+            this.globais = globais;
+        }
+
+        // as globais que a avaliação lê; uma chamada de função não
+        // declarada pode ler qualquer uma
+        private Set<Integer> lidas(No no) {
+            final Dependencias.Leituras leituras = dependencias.leituras(no);
+            final Set<Integer> lidas = new HashSet<Integer>(leituras.globais);
+
+            if (leituras.desconhecida) {
+                for (int slot = 0; slot < globais; slot++) {
+                    lidas.add(slot);
+                }
+            }
+
+            return lidas;
+        }
+
+        // sem leia e sem chamadas, e sem divisões ou operações verificadas,
+        // a não ser que os operandos sejam constantes e ela não falhe
+        private boolean semEfeito(Expressao exp) {
+            if (Otimizador.puro(exp))
+                return true;
+
+            final Dependencias.Leituras leituras = dependencias.leituras(exp);
+
+            if (!leituras.pura() || !leituras.chamadas.isEmpty() || !leituras.globais.isEmpty())
+                return false;
+
+            try {
+                exp.valor(null);
+
+                return true;
+            } catch (ArithmeticException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public No visitPrograma(Programa programa) {
+            final LinkedList<Instrucao> comandos = new LinkedList<Instrucao>();
+
+            for (ListIterator<Instrucao> i = programa.comandos.listIterator(programa.comandos.size()); i.hasPrevious();) {
+                Instrucao instrucao = i.previous();
+
+                if (instrucao instanceof Comando)
+                    instrucao = comando((Comando) instrucao);
+                if (!(instrucao instanceof Skip))
+                    comandos.addFirst(instrucao);
+            }
+
+            programa.comandos = new ArrayList<Instrucao>(comandos);
+
+            return programa;
+        }
+
+        @Override
+        public No visitBloco(Bloco bloco) {
+            final LinkedList<Comando> comandos = new LinkedList<Comando>();
+
+            for (ListIterator<Comando> i = bloco.comandos.listIterator(bloco.comandos.size()); i.hasPrevious();) {
+                final Comando comando = comando(i.previous());
+
+                if (!(comando instanceof Skip))
+                    comandos.addFirst(comando);
+            }
+
+            if (reescreve)
+                bloco.comandos = new ArrayList<Comando>(comandos);
+
+            return bloco;
+        }
+
+        @Override
+        public No visitAtribuicao(Atribuicao atribuicao) {
+            if (atribuicao.global && !vivas.contains(atribuicao.slot) && semEfeito(atribuicao.exp)) {
+                if (!reescreve)
+                    return atribuicao;
+
+                removidas++;
+
+                return Linguagem.skip;
+            }
+
+            if (atribuicao.global)
+                vivas.remove(atribuicao.slot);
+
+            vivas.addAll(lidas(atribuicao.exp));
+
+            return atribuicao;
+        }
+
+        @Override
+        public No visitEscreva(Escreva escreva) {
+            vivas.addAll(lidas(escreva.exp));
+
+            return escreva;
+        }
+
+        @Override
+        public No visitSe(Se se) {
+            final Set<Integer> saida = vivas;
+            final Set<Integer> entrada = new HashSet<Integer>();
+
+            vivas = new HashSet<Integer>(saida);
+            se.entao = comando(se.entao);
+            entrada.addAll(vivas);
+            entrada.addAll(lidas(se.condicao));
+
+            for (SenaoSe senaoSe : se.listaSenaoSe) {
+                vivas = new HashSet<Integer>(saida);
+                senaoSe.entao = comando(senaoSe.entao);
+                entrada.addAll(vivas);
+                entrada.addAll(lidas(senaoSe.condicao));
+            }
+
+            vivas = new HashSet<Integer>(saida);
+            se.senao = comando(se.senao);
+            entrada.addAll(vivas);
+
+            vivas = entrada;
+
+            return se;
+        }
+
+        @Override
+        public No visitEscolha(Escolha escolha) {
+            final Set<Integer> saida = vivas;
+            final Set<Integer> entrada = new HashSet<Integer>();
+
+            for (int i = 0; i < escolha.comandos.length; i++) {
+                vivas = new HashSet<Integer>(saida);
+                escolha.comandos[i] = comando(escolha.comandos[i]);
+                entrada.addAll(vivas);
+            }
+
+            vivas = new HashSet<Integer>(saida);
+            escolha.outro = comando(escolha.outro);
+            entrada.addAll(vivas);
+            entrada.addAll(lidas(escolha.padrao));
+
+            vivas = entrada;
+
+            return escolha;
+        }
+
+        // vivas no início de cada iteração: as da saída, as que a cabeça
+        // lê e as que o corpo lê antes de escrever, até estabilizar. fim é
+        // o que o laço faz depois do corpo: escreve o contador, de slot
+        // contador ou -1, depois de avaliar o que lidasFim lê
+        private Set<Integer> cabeca(Set<Integer> saida, Set<Integer> lidasCabeca, Comando corpo, int contador,
+                Set<Integer> lidasFim) {
+            final boolean reescreve = this.reescreve;
+            final Set<Integer> base = new HashSet<Integer>(saida);
+            Set<Integer> cabeca = base;
+            Set<Integer> anterior;
+
+            base.addAll(lidasCabeca);
+            this.reescreve = false;
+
+            do {
+                anterior = cabeca;
+                vivas = fimDoCorpo(cabeca, contador, lidasFim);
+                comando(corpo);
+
+                cabeca = new HashSet<Integer>(base);
+                cabeca.addAll(vivas);
+            } while (!cabeca.equals(anterior));
+
+            this.reescreve = reescreve;
+
+            return cabeca;
+        }
+
+        private static Set<Integer> fimDoCorpo(Set<Integer> cabeca, int contador, Set<Integer> lidasFim) {
+            final Set<Integer> fim = new HashSet<Integer>(cabeca);
+
+            fim.remove(contador);
+            fim.addAll(lidasFim);
+
+            return fim;
+        }
+
+        @Override
+        public No visitEnquanto(Enquanto enquanto) {
+            final Set<Integer> cabeca = cabeca(vivas, lidas(enquanto.condicao), enquanto.faca, -1,
+                    Collections.<Integer>emptySet());
+
+            vivas = new HashSet<Integer>(cabeca);
+            enquanto.faca = comando(enquanto.faca);
+
+            vivas = cabeca;
+
+            return enquanto;
+        }
+
+        // o laço escreve o contador na entrada e a cada iteração, sem lê-lo
+        @Override
+        public No visitPara(Para para) {
+            final int contador = para.id.global ? para.id.slot : -1;
+            final Set<Integer> lidasFim = lidas(para.passo);
+            final Set<Integer> cabeca = cabeca(vivas, lidas(para.ate), para.faca, contador, lidasFim);
+
+            vivas = fimDoCorpo(cabeca, contador, lidasFim);
+            para.faca = comando(para.faca);
+
+            vivas = new HashSet<Integer>(cabeca);
+            vivas.remove(contador);
+            vivas.addAll(lidas(para.de));
+
+            return para;
+        }
+    }
+}
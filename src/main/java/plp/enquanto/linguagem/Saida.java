@@ -0,0 +1,147 @@
+package plp.enquanto.linguagem;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Destino de escreva e exiba. As linhas são montadas direto num buffer de
+ * bytes, inteiros inclusive, sem criar Strings. Por linha (interativo), o
+ * buffer é descarregado a cada linha; em bloco, só quando enche ou em
+ * descarregue().
+ */
+public class Saida {
+    public static final int LIMITE = 64 * 1024;
+
+    static final Charset CHARSET = Charset.defaultCharset();
+    private static final byte[] FIM_LINHA = System.lineSeparator().getBytes(CHARSET);
+    private static final byte[] MIN_VALUE = String.valueOf(Integer.MIN_VALUE).getBytes(CHARSET);
+
+    private OutputStream destino;
+    private boolean porLinha;
+
+    private byte[] buffer;
+    private int posicao;
+    private long escritos;
+
+    public Saida(OutputStream destino) {
+        this(destino, true, LIMITE);
+    }
+
+    public Saida(OutputStream destino, boolean porLinha, int limite) {
+        this.destino = destino;
+        this.porLinha = porLinha;
+        // espaço para a maior linha de escreva mesmo com limites pequenos
+        this.buffer = new byte[Math.max(limite, 16)];
+    }
+
+    public void setDestino(OutputStream destino) {
+        descarregue();
+        this.destino = destino;
+    }
+
+    public void setPorLinha(boolean porLinha) {
+        this.porLinha = porLinha;
+    }
+
+    public void setLimite(int limite) {
+        descarregue();
+        this.buffer = new byte[Math.max(limite, 16)];
+    }
+
+    static byte[] codifique(String texto) {
+        return texto.getBytes(CHARSET);
+    }
+
+    public void escreva(int valor) {
+        if (buffer.length - posicao < 11 + FIM_LINHA.length) {
+            esvazie();
+        }
+
+        if (valor == Integer.MIN_VALUE) {
+            System.arraycopy(MIN_VALUE, 0, buffer, posicao, MIN_VALUE.length);
+            posicao += MIN_VALUE.length;
+        } else {
+            if (valor < 0) {
+                buffer[posicao++] = '-';
+                valor = -valor;
+            }
+
+            int fim = posicao + digitos(valor);
+            posicao = fim;
+
+            do {
+                buffer[--fim] = (byte) ('0' + valor % 10);
+                valor /= 10;
+            } while (valor != 0);
+        }
+
+        fimLinha();
+    }
+
+    public void escreva(byte[] texto) {
+        if (buffer.length - posicao < texto.length + FIM_LINHA.length) {
+            esvazie();
+
+            if (buffer.length < texto.length + FIM_LINHA.length) {
+                buffer = Arrays.copyOf(buffer, texto.length + FIM_LINHA.length);
+            }
+        }
+
+        System.arraycopy(texto, 0, buffer, posicao, texto.length);
+        posicao += texto.length;
+
+        fimLinha();
+    }
+
+    private static int digitos(int valor) {
+        int digitos = 1;
+
+        while (valor >= 10) {
+            valor /= 10;
+            digitos++;
+        }
+
+        return digitos;
+    }
+
+    private void fimLinha() {
+        for (byte b : FIM_LINHA) {
+            buffer[posicao++] = b;
+        }
+
+        if (porLinha) {
+            descarregue();
+        }
+    }
+
+    private void esvazie() {
+        if (posicao == 0)
+            return;
+
+        try {
+            destino.write(buffer, 0, posicao);
+            escritos += posicao;
+            posicao = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // bytes produzidos até aqui, descarregados ou não
+    public long getBytes() {
+        return escritos + posicao;
+    }
+
+    public void descarregue() {
+        esvazie();
+
+        try {
+            destino.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,753 @@
+package plp.enquanto.linguagem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import plp.enquanto.linguagem.Linguagem.*;
+
+/**
+ * Formato binário compacto da árvore de um programa, para guardá-la e
+ * recarregá-la sem passar pelo analisador. Cada nó é uma marca de um byte
+ * seguida dos filhos em pré-ordem; inteiros são gravados em comprimento
+ * variável (zigue-zague) e os nomes, uma vez só, numa tabela no início.
+ *
+ * A tabela lista primeiro as globais na ordem dos seus slots, de modo que a
+ * leitura, declarando-as nessa ordem, reconstrói os mesmos slots. Funções
+ * são referenciadas pela ordem de declaração no programa. Os nós que
+ * guardam posição levam a linha logo após a marca.
+ *
+ * VERSAO muda sempre que o formato ou a construção da árvore mudam.
+ */
+public final class Serializador implements Visitor<Void> {
+    public static final int VERSAO = 3;
+
+    private static final int PROGRAMA = 1;
+    private static final int PARA = 2;
+    private static final int SE = 3;
+    private static final int SKIP = 4;
+    private static final int ESCREVA = 5;
+    private static final int ESCOLHA = 6;
+    private static final int ENQUANTO = 7;
+    private static final int EXIBA = 8;
+    private static final int BLOCO = 9;
+    private static final int CHAMADA_FUNCAO = 10;
+    private static final int FUNCAO = 11;
+    private static final int ATRIBUICAO = 12;
+    private static final int INTEIRO = 13;
+    private static final int ID = 14;
+    private static final int LEIA = 15;
+    private static final int EXP_NEG = 16;
+    private static final int EXP_SOMA = 17;
+    private static final int EXP_SUB = 18;
+    private static final int EXP_MUL = 19;
+    private static final int EXP_DIV = 20;
+    private static final int EXP_POT = 21;
+    private static final int BOOLEANO = 22;
+    private static final int EXP_DESIGUAL = 23;
+    private static final int EXP_IGUAL = 24;
+    private static final int EXP_MAIOR = 25;
+    private static final int EXP_MAIOR_IGUAL = 26;
+    private static final int EXP_MENOR = 27;
+    private static final int EXP_MENOR_IGUAL = 28;
+    private static final int NAO_LOGICO = 29;
+    private static final int E_LOGICO = 30;
+    private static final int OU_LOGICO = 31;
+    private static final int XOR_LOGICO = 32;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> nomes = new LinkedHashMap<String, Integer>();
+    private final Map<Funcao, Integer> funcoes = new HashMap<Funcao, Integer>();
+
+    private Serializador(DataOutputStream out) {
+        this.out = out;
+    }
+
+    public static void escreva(Programa programa, DataOutput destino) throws IOException {
+        final ByteArrayOutputStream corpo = new ByteArrayOutputStream();
+        final Serializador serializador = new Serializador(new DataOutputStream(corpo));
+
+        final String[] globais = new String[programa.ambiente.slots.size()];
+
+        for (Map.Entry<String, Integer> slot : programa.ambiente.slots.entrySet()) {
+            globais[slot.getValue()] = slot.getKey();
+        }
+
+        for (String global : globais) {
+            serializador.indice(global);
+        }
+
+        programa.accept(serializador);
+        serializador.out.flush();
+
+        inteiro(destino, globais.length);
+        inteiro(destino, serializador.nomes.size());
+
+        for (String nome : serializador.nomes.keySet()) {
+            texto(destino, nome);
+        }
+
+        final byte[] bytes = corpo.toByteArray();
+        destino.write(bytes);
+    }
+
+    public static Programa leia(DataInput origem) throws IOException {
+        return new Leitor(origem).programa();
+    }
+
+    // inteiros em zigue-zague, sete bits por byte
+    static void inteiro(DataOutput out, int valor) throws IOException {
+        int v = (valor << 1) ^ (valor >> 31);
+
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+
+        out.writeByte(v);
+    }
+
+    static int inteiro(DataInput in) throws IOException {
+        int v = 0;
+
+        for (int deslocamento = 0; deslocamento < 35; deslocamento += 7) {
+            final int b = in.readUnsignedByte();
+
+            v |= (b & 0x7F) << deslocamento;
+
+            if ((b & 0x80) == 0)
+                return (v >>> 1) ^ -(v & 1);
+        }
+
+        throw new IOException("Inteiro mal formado.");
+    }
+
+    private static void texto(DataOutput out, String texto) throws IOException {
+        final byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+
+        inteiro(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String texto(DataInput in) throws IOException {
+        final int tamanho = inteiro(in);
+
+        if (tamanho < 0)
+            throw new IOException("Texto mal formado.");
+
+        final byte[] bytes = new byte[tamanho];
+        in.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void marca(int marca) {
+        try {
+            out.writeByte(marca);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void inteiro(int valor) {
+        try {
+            inteiro(out, valor);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int indice(String nome) {
+        Integer indice = nomes.get(nome);
+
+        if (indice == null) {
+            indice = nomes.size();
+            nomes.put(nome, indice);
+        }
+
+        return indice;
+    }
+
+    private void linha(Posicionado no) {
+        inteiro(no.linha);
+    }
+
+    private void nome(String nome) {
+        inteiro(indice(nome));
+    }
+
+    private void instrucoes(List<? extends Instrucao> instrucoes) {
+        inteiro(instrucoes.size());
+
+        for (Instrucao instrucao : instrucoes) {
+            instrucao.accept(this);
+        }
+    }
+
+    @Override
+    public Void visitPrograma(Programa programa) {
+        marca(PROGRAMA);
+        instrucoes(programa.comandos);
+
+        return null;
+    }
+
+    @Override
+    public Void visitPara(Para para) {
+        marca(PARA);
+        linha(para);
+        nome(para.id.id);
+        para.de.accept(this);
+        para.ate.accept(this);
+        para.passo.accept(this);
+        para.faca.accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visitSenaoSe(SenaoSe senaoSe) {
+        linha(senaoSe);
+        senaoSe.condicao.accept(this);
+        senaoSe.entao.accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visitSe(Se se) {
+        marca(SE);
+        visitSenaoSe(se);
+        inteiro(se.listaSenaoSe.size());
+
+        for (SenaoSe senaoSe : se.listaSenaoSe) {
+            visitSenaoSe(senaoSe);
+        }
+
+        se.senao.accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visitSkip(Skip skip) {
+        marca(SKIP);
+
+        return null;
+    }
+
+    @Override
+    public Void visitEscreva(Escreva escreva) {
+        marca(ESCREVA);
+        linha(escreva);
+        escreva.exp.accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visitEscolha(Escolha escolha) {
+        marca(ESCOLHA);
+        linha(escolha);
+        escolha.padrao.accept(this);
+        inteiro(escolha.chaves.length);
+
+        for (int i = 0; i < escolha.chaves.length; i++) {
+            inteiro(escolha.chaves[i]);
+            escolha.comandos[i].accept(this);
+        }
+
+        escolha.outro.accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visitEnquanto(Enquanto enquanto) {
+        marca(ENQUANTO);
+        linha(enquanto);
+        enquanto.condicao.accept(this);
+        enquanto.faca.accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visitExiba(Exiba exiba) {
+        marca(EXIBA);
+        linha(exiba);
+
+        try {
+            texto(out, exiba.texto);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitBloco(Bloco bloco) {
+        marca(BLOCO);
+        linha(bloco);
+        instrucoes(bloco.comandos);
+
+        return null;
+    }
+
+    @Override
+    public Void visitChamadaFuncao(ChamadaFuncao chamadaFuncao) {
+        final Integer funcao = funcoes.get(chamadaFuncao.funcao);
+
+        marca(CHAMADA_FUNCAO);
+        linha(chamadaFuncao);
+        inteiro(funcao == null ? -1 : funcao);
+        inteiro(chamadaFuncao.params.size());
+
+        for (Expressao param : chamadaFuncao.params) {
+            param.accept(this);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitFuncao(Funcao funcao) {
+        funcoes.put(funcao, funcoes.size());
+
+        marca(FUNCAO);
+        linha(funcao);
+        nome(funcao.id);
+        inteiro(funcao.args.size());
+
+        for (String arg : funcao.args) {
+            nome(arg);
+        }
+
+        funcao.retorno.accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visitAtribuicao(Atribuicao atribuicao) {
+        marca(ATRIBUICAO);
+        linha(atribuicao);
+        nome(atribuicao.id);
+        atribuicao.exp.accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visitInteiro(Inteiro inteiro) {
+        marca(INTEIRO);
+        inteiro(inteiro.valor);
+
+        return null;
+    }
+
+    @Override
+    public Void visitId(Id id) {
+        marca(ID);
+        nome(id.id);
+
+        return null;
+    }
+
+    @Override
+    public Void visitLeia(Leia leia) {
+        marca(LEIA);
+
+        return null;
+    }
+
+    @Override
+    public Void visitExpNeg(ExpNeg expNeg) {
+        marca(EXP_NEG);
+        expNeg.exp.accept(this);
+
+        return null;
+    }
+
+    private Void binaria(int marca, ExpBin exp) {
+        marca(marca);
+        exp.esq.accept(this);
+        exp.dir.accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visitExpSoma(ExpSoma expSoma) {
+        return binaria(EXP_SOMA, expSoma);
+    }
+
+    @Override
+    public Void visitExpSub(ExpSub expSub) {
+        return binaria(EXP_SUB, expSub);
+    }
+
+    @Override
+    public Void visitExpMul(ExpMul expMul) {
+        return binaria(EXP_MUL, expMul);
+    }
+
+    @Override
+    public Void visitExpDiv(ExpDiv expDiv) {
+        return binaria(EXP_DIV, expDiv);
+    }
+
+    @Override
+    public Void visitExpPot(ExpPot expPot) {
+        return binaria(EXP_POT, expPot);
+    }
+
+    @Override
+    public Void visitBooleano(Booleano booleano) {
+        marca(BOOLEANO);
+        inteiro(booleano.valor ? 1 : 0);
+
+        return null;
+    }
+
+    private Void relacao(int marca, ExpRel exp) {
+        marca(marca);
+        exp.esq.accept(this);
+        exp.dir.accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visitExpDesigual(ExpDesigual expDesigual) {
+        return relacao(EXP_DESIGUAL, expDesigual);
+    }
+
+    @Override
+    public Void visitExpIgual(ExpIgual expIgual) {
+        return relacao(EXP_IGUAL, expIgual);
+    }
+
+    @Override
+    public Void visitExpMaior(ExpMaior expMaior) {
+        return relacao(EXP_MAIOR, expMaior);
+    }
+
+    @Override
+    public Void visitExpMaiorIgual(ExpMaiorIgual expMaiorIgual) {
+        return relacao(EXP_MAIOR_IGUAL, expMaiorIgual);
+    }
+
+    @Override
+    public Void visitExpMenor(ExpMenor expMenor) {
+        return relacao(EXP_MENOR, expMenor);
+    }
+
+    @Override
+    public Void visitExpMenorIgual(ExpMenorIgual expMenorIgual) {
+        return relacao(EXP_MENOR_IGUAL, expMenorIgual);
+    }
+
+    @Override
+    public Void visitNaoLogico(NaoLogico naoLogico) {
+        marca(NAO_LOGICO);
+        naoLogico.b.accept(this);
+
+        return null;
+    }
+
+    private Void logica(int marca, Bool esq, Bool dir) {
+        marca(marca);
+        esq.accept(this);
+        dir.accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visitELogico(ELogico eLogico) {
+        return logica(E_LOGICO, eLogico.esq, eLogico.dir);
+    }
+
+    @Override
+    public Void visitOuLogico(OuLogico ouLogico) {
+        return logica(OU_LOGICO, ouLogico.esq, ouLogico.dir);
+    }
+
+    @Override
+    public Void visitXorLogico(XorLogico xorLogico) {
+        return logica(XOR_LOGICO, xorLogico.esq, xorLogico.dir);
+    }
+
+    /**
+     * Reconstrói a árvore pelo mesmo caminho do MeuVisitor: os nós são
+     * criados pelos construtores públicos, sobre ambientes montados na
+     * mesma ordem, e portanto recebem os mesmos slots.
+     */
+    private static final class Leitor {
+        private final DataInput in;
+        private final Ambiente raiz = new Ambiente();
+        private final List<Funcao> funcoes = new ArrayList<Funcao>();
+        private final Leia leia = new Leia();
+        private final Skip skip = new Skip();
+
+        private String[] nomes;
+        private Ambiente ambienteAtual = raiz;
+
+        Leitor(DataInput in) {
+            this.in = in;
+        }
+
+        Programa programa() throws IOException {
+            final int globais = inteiro(in);
+            final int total = inteiro(in);
+
+            if (globais < 0 || total < globais)
+                throw new IOException("Tabela de nomes mal formada.");
+
+            nomes = new String[total];
+
+            for (int i = 0; i < total; i++) {
+                nomes[i] = texto(in);
+            }
+
+            for (int i = 0; i < globais; i++) {
+                raiz.slot(nomes[i]);
+            }
+
+            espere(PROGRAMA);
+
+            final List<Instrucao> comandos = new ArrayList<Instrucao>();
+            final int n = tamanho();
+
+            for (int i = 0; i < n; i++) {
+                comandos.add(instrucao());
+            }
+
+            return new Programa(comandos, raiz);
+        }
+
+        private static <T extends Posicionado> T naLinha(T no, int linha) {
+            no.linha = linha;
+
+            return no;
+        }
+
+        private void espere(int marca) throws IOException {
+            final int lida = in.readUnsignedByte();
+
+            if (lida != marca)
+                throw new IOException(String.format("Marca %d onde se esperava %d.", lida, marca));
+        }
+
+        private int tamanho() throws IOException {
+            final int tamanho = inteiro(in);
+
+            if (tamanho < 0)
+                throw new IOException("Tamanho negativo.");
+
+            return tamanho;
+        }
+
+        private String nome() throws IOException {
+            final int indice = inteiro(in);
+
+            if (indice < 0 || indice >= nomes.length)
+                throw new IOException("Nome fora da tabela.");
+
+            return nomes[indice];
+        }
+
+        private Instrucao instrucao() throws IOException {
+            return no(in.readUnsignedByte(), Instrucao.class);
+        }
+
+        private Comando comando() throws IOException {
+            return no(in.readUnsignedByte(), Comando.class);
+        }
+
+        private Expressao expressao() throws IOException {
+            return no(in.readUnsignedByte(), Expressao.class);
+        }
+
+        private Bool bool() throws IOException {
+            return no(in.readUnsignedByte(), Bool.class);
+        }
+
+        private <T> T no(int marca, Class<T> tipo) throws IOException {
+            final Object no = no(marca);
+
+            if (!tipo.isInstance(no))
+                throw new IOException(String.format("Marca %d não é %s.", marca, tipo.getSimpleName()));
+
+            return tipo.cast(no);
+        }
+
+        private Object no(int marca) throws IOException {
+            switch (marca) {
+                case PARA: {
+                    final int linha = inteiro(in);
+                    final Id id = new Id(nome(), ambienteAtual);
+                    final Expressao de = expressao();
+                    final Expressao ate = expressao();
+                    final Expressao passo = expressao();
+
+                    return naLinha(new Para(id, de, ate, passo, comando()), linha);
+                }
+                case SE: {
+                    final int linha = inteiro(in);
+                    final Bool condicao = bool();
+                    final Comando entao = comando();
+                    final List<SenaoSe> listaSenaoSe = new ArrayList<SenaoSe>();
+                    final int n = tamanho();
+
+                    for (int i = 0; i < n; i++) {
+                        final int _linha = inteiro(in);
+                        final Bool _condicao = bool();
+
+                        listaSenaoSe.add(naLinha(new SenaoSe(_condicao, comando()), _linha));
+                    }
+
+                    return naLinha(new Se(condicao, entao, listaSenaoSe, comando()), linha);
+                }
+                case SKIP:
+                    return skip;
+                case ESCREVA: {
+                    final int linha = inteiro(in);
+
+                    return naLinha(new Escreva(expressao()), linha);
+                }
+                case ESCOLHA: {
+                    final int linha = inteiro(in);
+                    final Expressao padrao = expressao();
+                    final Map<Integer, Comando> casos = new LinkedHashMap<Integer, Comando>();
+                    final int n = tamanho();
+
+                    for (int i = 0; i < n; i++) {
+                        final int chave = inteiro(in);
+
+                        casos.put(chave, comando());
+                    }
+
+                    return naLinha(new Escolha(padrao, casos, comando()), linha);
+                }
+                case ENQUANTO: {
+                    final int linha = inteiro(in);
+                    final Bool condicao = bool();
+
+                    return naLinha(new Enquanto(condicao, comando()), linha);
+                }
+                case EXIBA: {
+                    final int linha = inteiro(in);
+
+                    return naLinha(new Exiba(texto(in)), linha);
+                }
+                case BLOCO: {
+                    final int linha = inteiro(in);
+                    final List<Comando> comandos = new ArrayList<Comando>();
+                    final int n = tamanho();
+
+                    for (int i = 0; i < n; i++) {
+                        comandos.add(comando());
+                    }
+
+                    return naLinha(new Bloco(comandos), linha);
+                }
+                case CHAMADA_FUNCAO: {
+                    final int linha = inteiro(in);
+                    final int indice = inteiro(in);
+
+                    if (indice < -1 || indice >= funcoes.size())
+                        throw new IOException("Função fora da tabela.");
+
+                    final Funcao funcao = indice < 0 ? null : funcoes.get(indice);
+                    final List<Expressao> params = new ArrayList<Expressao>();
+                    final int n = tamanho();
+
+                    for (int i = 0; i < n; i++) {
+                        params.add(expressao());
+                    }
+
+                    return naLinha(new ChamadaFuncao(funcao, params), linha);
+                }
+                case FUNCAO: {
+                    final int linha = inteiro(in);
+                    ambienteAtual = new Ambiente(raiz);
+
+                    final Funcao funcao = naLinha(new Funcao(nome(), ambienteAtual), linha);
+                    final List<String> args = new ArrayList<String>();
+                    final int n = tamanho();
+
+                    for (int i = 0; i < n; i++) {
+                        final String arg = nome();
+
+                        ambienteAtual.slot(arg);
+                        args.add(arg);
+                    }
+
+                    funcao.setArgs(args);
+                    funcoes.add(funcao);
+
+                    funcao.setRetorno(expressao());
+                    ambienteAtual = raiz;
+
+                    return funcao;
+                }
+                case ATRIBUICAO: {
+                    final int linha = inteiro(in);
+                    final String id = nome();
+
+                    return naLinha(new Atribuicao(id, expressao(), ambienteAtual), linha);
+                }
+                case INTEIRO:
+                    return new Inteiro(inteiro(in));
+                case ID:
+                    return new Id(nome(), ambienteAtual);
+                case LEIA:
+                    return leia;
+                case EXP_NEG:
+                    return new ExpNeg(expressao());
+                case EXP_SOMA:
+                    return new ExpSoma(expressao(), expressao());
+                case EXP_SUB:
+                    return new ExpSub(expressao(), expressao());
+                case EXP_MUL:
+                    return new ExpMul(expressao(), expressao());
+                case EXP_DIV:
+                    return new ExpDiv(expressao(), expressao());
+                case EXP_POT:
+                    return new ExpPot(expressao(), expressao());
+                case BOOLEANO:
+                    return new Booleano(inteiro(in) != 0);
+                case EXP_DESIGUAL:
+                    return new ExpDesigual(expressao(), expressao());
+                case EXP_IGUAL:
+                    return new ExpIgual(expressao(), expressao());
+                case EXP_MAIOR:
+                    return new ExpMaior(expressao(), expressao());
+                case EXP_MAIOR_IGUAL:
+                    return new ExpMaiorIgual(expressao(), expressao());
+                case EXP_MENOR:
+                    return new ExpMenor(expressao(), expressao());
+                case EXP_MENOR_IGUAL:
+                    return new ExpMenorIgual(expressao(), expressao());
+                case NAO_LOGICO:
+                    return new NaoLogico(bool());
+                case E_LOGICO:
+                    return new ELogico(bool(), bool());
+                case OU_LOGICO:
+                    return new OuLogico(bool(), bool());
+                case XOR_LOGICO:
+                    return new XorLogico(bool(), bool());
+                default:
+                    throw new IOException(String.format("Marca desconhecida: %d.", marca));
+            }
+        }
+    }
+}
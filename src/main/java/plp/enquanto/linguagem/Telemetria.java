@@ -0,0 +1,56 @@
+package plp.enquanto.linguagem;
+
+import plp.enquanto.linguagem.Linguagem.ChamadaFuncao;
+
+/**
+ * Pontos de instrumentação das fases do interpretador. Esta implementação
+ * não faz nada; quando a JVM tem o Java Flight Recorder, ATUAL é uma
+ * TelemetriaJfr, que publica cada fase como um evento. As classes do JFR
+ * só são carregadas nesse caso, de modo que JVMs sem ele continuam
+ * executando os programas.
+ *
+ * Os eventos devolvidos por inicie* são opacos e podem ser null.
+ */
+public class Telemetria {
+    // uma chamada de função em cada AMOSTRA + 1 é medida
+    static final int AMOSTRA = 1024 - 1;
+
+    public static final Telemetria ATUAL = carregue();
+
+    private static Telemetria carregue() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+
+            return (Telemetria) Class.forName("plp.enquanto.linguagem.TelemetriaJfr")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new Telemetria();
+        }
+    }
+
+    public Object inicieAnalise() {
+        return null;
+    }
+
+    // construcao é o tempo gasto construindo a árvore durante a análise
+    public void termineAnalise(Object evento, String fonte, boolean sll, long construcao) {
+    }
+
+    public Object inicieConstrucao() {
+        return null;
+    }
+
+    public void termineConstrucao(Object evento, String fonte, boolean cache, int removidos) {
+    }
+
+    Object inicieExecucao(Contexto contexto) {
+        return null;
+    }
+
+    void termineExecucao(Object evento, Contexto contexto) {
+    }
+
+    int chamada(ChamadaFuncao chamada, Contexto contexto) {
+        return chamada.avalie(contexto);
+    }
+}
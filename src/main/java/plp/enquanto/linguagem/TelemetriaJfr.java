@@ -0,0 +1,314 @@
+package plp.enquanto.linguagem;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import plp.enquanto.linguagem.Linguagem.ChamadaFuncao;
+
+/**
+ * Eventos do JFR para a análise, a construção, a execução e uma amostra das
+ * chamadas de função, e um evento periódico com os contadores das execuções
+ * em curso somados aos das já terminadas.
+ *
+ * Carregar uma classe de evento inicializa o JFR, o que custa centenas de
+ * milissegundos na partida; por isso nada é medido enquanto o JFR não
+ * estiver inicializado, seja por -XX:StartFlightRecording ou por um
+ * JFR.start posterior. Execuções iniciadas antes disso não entram nos
+ * contadores.
+ *
+ * Os contadores de uma execução em curso são lidos de outra thread sem
+ * sincronização: o evento periódico pode ver valores um pouco atrasados.
+ */
+final class TelemetriaJfr extends Telemetria {
+    private static final Set<Contexto> ATIVOS = Collections.synchronizedSet(
+            Collections.newSetFromMap(new IdentityHashMap<Contexto, Boolean>()));
+
+    private static final AtomicLong COMANDOS = new AtomicLong();
+    private static final AtomicLong ITERACOES = new AtomicLong();
+    private static final AtomicLong CHAMADAS = new AtomicLong();
+    private static final AtomicLong BYTES = new AtomicLong();
+
+    private static boolean registrado;
+
+    // o JFR já está de pé; na primeira vez, registra o evento periódico
+    private static boolean ativo() {
+        if (!FlightRecorder.isInitialized())
+            return false;
+
+        synchronized (ATIVOS) {
+            if (!registrado) {
+                registrado = true;
+                registre();
+            }
+        }
+
+        return true;
+    }
+
+    private static void registre() {
+        FlightRecorder.addPeriodicEvent(Contadores.class, new Runnable() {
+            @Override
+            public void run() {
+                final Contadores evento = new Contadores();
+
+                long comandos = COMANDOS.get();
+                long iteracoes = ITERACOES.get();
+                long chamadas = CHAMADAS.get();
+                long bytes = BYTES.get();
+
+                synchronized (ATIVOS) {
+                    for (Contexto contexto : ATIVOS) {
+                        comandos += contexto.comandos;
+                        iteracoes += contexto.iteracoes;
+                        chamadas += contexto.chamadas;
+                        bytes += contexto.saida.getBytes();
+                    }
+
+                    evento.execucoes = ATIVOS.size();
+                }
+
+                evento.comandos = comandos + iteracoes;
+                evento.iteracoes = iteracoes;
+                evento.chamadas = chamadas;
+                evento.bytesSaida = bytes;
+                evento.commit();
+            }
+        });
+    }
+
+    @Override
+    public Object inicieAnalise() {
+        if (!ativo())
+            return null;
+
+        final Analise evento = new Analise();
+        evento.begin();
+
+        return evento;
+    }
+
+    @Override
+    public void termineAnalise(Object evento, String fonte, boolean sll, long construcao) {
+        if (evento == null)
+            return;
+
+        final Analise analise = (Analise) evento;
+
+        analise.end();
+
+        if (analise.shouldCommit()) {
+            analise.fonte = fonte;
+            analise.sll = sll;
+            analise.construcao = construcao;
+            analise.commit();
+        }
+    }
+
+    @Override
+    public Object inicieConstrucao() {
+        if (!ativo())
+            return null;
+
+        final Construcao evento = new Construcao();
+        evento.begin();
+
+        return evento;
+    }
+
+    @Override
+    public void termineConstrucao(Object evento, String fonte, boolean cache, int removidos) {
+        if (evento == null)
+            return;
+
+        final Construcao construcao = (Construcao) evento;
+
+        construcao.end();
+
+        if (construcao.shouldCommit()) {
+            construcao.fonte = fonte;
+            construcao.cache = cache;
+            construcao.removidos = removidos;
+            construcao.commit();
+        }
+    }
+
+    // a execução entra nos contadores periódicos mesmo com o evento
+    // desligado, pois a gravação pode começar no meio dela
+    @Override
+    Object inicieExecucao(Contexto contexto) {
+        if (!ativo())
+            return null;
+
+        final Execucao evento = new Execucao();
+
+        // valores de partida: um contexto pode ser executado mais de uma vez
+        evento.comandos = contexto.comandos;
+        evento.iteracoes = contexto.iteracoes;
+        evento.chamadas = contexto.chamadas;
+        evento.bytesSaida = contexto.saida.getBytes();
+
+        ATIVOS.add(contexto);
+        evento.begin();
+
+        return evento;
+    }
+
+    @Override
+    void termineExecucao(Object evento, Contexto contexto) {
+        if (evento == null)
+            return;
+
+        final Execucao execucao = (Execucao) evento;
+
+        execucao.end();
+        ATIVOS.remove(contexto);
+
+        // só o que esta execução acrescentou ao contexto
+        final long comandos = contexto.comandos - execucao.comandos;
+        final long iteracoes = contexto.iteracoes - execucao.iteracoes;
+        final long chamadas = contexto.chamadas - execucao.chamadas;
+        final long bytes = contexto.saida.getBytes() - execucao.bytesSaida;
+
+        COMANDOS.addAndGet(comandos);
+        ITERACOES.addAndGet(iteracoes);
+        CHAMADAS.addAndGet(chamadas);
+        BYTES.addAndGet(bytes);
+
+        if (execucao.shouldCommit()) {
+            execucao.comandos = comandos + iteracoes;
+            execucao.iteracoes = iteracoes;
+            execucao.chamadas = chamadas;
+            execucao.bytesSaida = bytes;
+            execucao.commit();
+        }
+    }
+
+    @Override
+    int chamada(ChamadaFuncao chamada, Contexto contexto) {
+        if (!ativo())
+            return chamada.avalie(contexto);
+
+        final Chamada evento = new Chamada();
+
+        if (!evento.isEnabled())
+            return chamada.avalie(contexto);
+
+        evento.begin();
+
+        try {
+            return chamada.avalie(contexto);
+        } finally {
+            evento.end();
+
+            if (evento.shouldCommit()) {
+                evento.funcao = chamada.funcao == null ? null : chamada.funcao.id;
+                evento.linha = chamada.linha;
+                evento.commit();
+            }
+        }
+    }
+
+    @Name("plp.enquanto.Analise")
+    @Label("Análise")
+    @Description("Análise sintática de um fonte, com a construção da árvore.")
+    @Category("Enquanto")
+    @StackTrace(false)
+    static final class Analise extends Event {
+        @Label("Fonte")
+        String fonte;
+
+        @Label("Só SLL")
+        @Description("Falso quando a análise precisou ser refeita em LL.")
+        boolean sll;
+
+        @Label("Construção")
+        @Description("Tempo construindo a árvore, incluído na duração.")
+        @Timespan(Timespan.NANOSECONDS)
+        long construcao;
+    }
+
+    @Name("plp.enquanto.Construcao")
+    @Label("Construção")
+    @Description("Obtenção do Programa de um fonte: cache ou análise, e otimização.")
+    @Category("Enquanto")
+    @StackTrace(false)
+    static final class Construcao extends Event {
+        @Label("Fonte")
+        String fonte;
+
+        @Label("Da cache")
+        boolean cache;
+
+        @Label("Nós removidos")
+        int removidos;
+    }
+
+    @Name("plp.enquanto.Execucao")
+    @Label("Execução")
+    @Description("Execução de um Programa.")
+    @Category("Enquanto")
+    @StackTrace(false)
+    static final class Execucao extends Event {
+        @Label("Comandos")
+        long comandos;
+
+        @Label("Iterações")
+        long iteracoes;
+
+        @Label("Chamadas")
+        long chamadas;
+
+        @Label("Saída")
+        @DataAmount
+        long bytesSaida;
+    }
+
+    @Name("plp.enquanto.Chamada")
+    @Label("Chamada de função")
+    @Description("Uma em cada 1024 chamadas de função.")
+    @Category("Enquanto")
+    static final class Chamada extends Event {
+        @Label("Função")
+        String funcao;
+
+        @Label("Linha")
+        int linha;
+    }
+
+    @Name("plp.enquanto.Contadores")
+    @Label("Contadores")
+    @Description("Totais acumulados desde o início da JVM.")
+    @Category("Enquanto")
+    @StackTrace(false)
+    @Period("1 s")
+    static final class Contadores extends Event {
+        @Label("Execuções em curso")
+        int execucoes;
+
+        @Label("Comandos")
+        long comandos;
+
+        @Label("Iterações")
+        long iteracoes;
+
+        @Label("Chamadas")
+        long chamadas;
+
+        @Label("Saída")
+        @DataAmount
+        long bytesSaida;
+    }
+}
@@ -0,0 +1,280 @@
+package plp.enquanto.linguagem;
+
+import java.util.List;
+
+import plp.enquanto.linguagem.Linguagem.*;
+
+/**
+ * Reescreve a árvore no lugar: cada filho é trocado, no próprio pai, pelo nó
+ * que sua visita devolver. Sem sobrescritas, devolve a árvore inalterada.
+ *
+ * Os métodos expressao, bool, comando e instrucao são o único caminho de um
+ * pai até seus filhos; sobrescrevê-los muda o percurso inteiro.
+ */
+public class Transformador implements Visitor<No> {
+
+    public Programa transforme(Programa programa) {
+        return (Programa) programa.accept(this);
+    }
+
+    protected Expressao expressao(Expressao exp) {
+        return (Expressao) exp.accept(this);
+    }
+
+    protected Bool bool(Bool bool) {
+        return (Bool) bool.accept(this);
+    }
+
+    protected Comando comando(Comando comando) {
+        return (Comando) comando.accept(this);
+    }
+
+    protected Instrucao instrucao(Instrucao instrucao) {
+        return (Instrucao) instrucao.accept(this);
+    }
+
+    private void expressoes(List<Expressao> exps) {
+        for (int i = 0; i < exps.size(); i++) {
+            exps.set(i, expressao(exps.get(i)));
+        }
+    }
+
+    private void comandos(List<Comando> comandos) {
+        for (int i = 0; i < comandos.size(); i++) {
+            comandos.set(i, comando(comandos.get(i)));
+        }
+    }
+
+    @Override
+    public No visitPrograma(Programa programa) {
+        for (int i = 0; i < programa.comandos.size(); i++) {
+            programa.comandos.set(i, instrucao(programa.comandos.get(i)));
+        }
+
+        return programa;
+    }
+
+    @Override
+    public No visitPara(Para para) {
+        para.de = expressao(para.de);
+        para.ate = expressao(para.ate);
+        para.passo = expressao(para.passo);
+        para.faca = comando(para.faca);
+
+        return para;
+    }
+
+    @Override
+    public No visitSenaoSe(SenaoSe senaoSe) {
+        senaoSe.condicao = bool(senaoSe.condicao);
+        senaoSe.entao = comando(senaoSe.entao);
+
+        return senaoSe;
+    }
+
+    @Override
+    public No visitSe(Se se) {
+        visitSenaoSe(se);
+
+        for (SenaoSe senaoSe : se.listaSenaoSe) {
+            visitSenaoSe(senaoSe);
+        }
+
+        se.senao = comando(se.senao);
+
+        return se;
+    }
+
+    @Override
+    public No visitSkip(Skip skip) {
+        return skip;
+    }
+
+    @Override
+    public No visitEscreva(Escreva escreva) {
+        escreva.exp = expressao(escreva.exp);
+
+        return escreva;
+    }
+
+    @Override
+    public No visitEscolha(Escolha escolha) {
+        escolha.padrao = expressao(escolha.padrao);
+
+        for (int i = 0; i < escolha.comandos.length; i++) {
+            escolha.comandos[i] = comando(escolha.comandos[i]);
+        }
+
+        escolha.outro = comando(escolha.outro);
+
+        return escolha;
+    }
+
+    @Override
+    public No visitEnquanto(Enquanto enquanto) {
+        enquanto.condicao = bool(enquanto.condicao);
+        enquanto.faca = comando(enquanto.faca);
+
+        return enquanto;
+    }
+
+    @Override
+    public No visitExiba(Exiba exiba) {
+        return exiba;
+    }
+
+    @Override
+    public No visitBloco(Bloco bloco) {
+        comandos(bloco.comandos);
+
+        return bloco;
+    }
+
+    @Override
+    public No visitChamadaFuncao(ChamadaFuncao chamadaFuncao) {
+        expressoes(chamadaFuncao.params);
+
+        return chamadaFuncao;
+    }
+
+    @Override
+    public No visitFuncao(Funcao funcao) {
+        funcao.retorno = expressao(funcao.retorno);
+
+        return funcao;
+    }
+
+    @Override
+    public No visitAtribuicao(Atribuicao atribuicao) {
+        atribuicao.exp = expressao(atribuicao.exp);
+
+        return atribuicao;
+    }
+
+    @Override
+    public No visitInteiro(Inteiro inteiro) {
+        return inteiro;
+    }
+
+    @Override
+    public No visitId(Id id) {
+        return id;
+    }
+
+    @Override
+    public No visitLeia(Leia leia) {
+        return leia;
+    }
+
+    @Override
+    public No visitExpNeg(ExpNeg expNeg) {
+        expNeg.exp = expressao(expNeg.exp);
+
+        return expNeg;
+    }
+
+    protected No visitExpBin(ExpBin exp) {
+        exp.esq = expressao(exp.esq);
+        exp.dir = expressao(exp.dir);
+
+        return exp;
+    }
+
+    @Override
+    public No visitExpSoma(ExpSoma expSoma) {
+        return visitExpBin(expSoma);
+    }
+
+    @Override
+    public No visitExpSub(ExpSub expSub) {
+        return visitExpBin(expSub);
+    }
+
+    @Override
+    public No visitExpMul(ExpMul expMul) {
+        return visitExpBin(expMul);
+    }
+
+    @Override
+    public No visitExpDiv(ExpDiv expDiv) {
+        return visitExpBin(expDiv);
+    }
+
+    @Override
+    public No visitExpPot(ExpPot expPot) {
+        return visitExpBin(expPot);
+    }
+
+    @Override
+    public No visitBooleano(Booleano booleano) {
+        return booleano;
+    }
+
+    protected No visitExpRel(ExpRel exp) {
+        exp.esq = expressao(exp.esq);
+        exp.dir = expressao(exp.dir);
+
+        return exp;
+    }
+
+    @Override
+    public No visitExpDesigual(ExpDesigual expDesigual) {
+        return visitExpRel(expDesigual);
+    }
+
+    @Override
+    public No visitExpIgual(ExpIgual expIgual) {
+        return visitExpRel(expIgual);
+    }
+
+    @Override
+    public No visitExpMaior(ExpMaior expMaior) {
+        return visitExpRel(expMaior);
+    }
+
+    @Override
+    public No visitExpMaiorIgual(ExpMaiorIgual expMaiorIgual) {
+        return visitExpRel(expMaiorIgual);
+    }
+
+    @Override
+    public No visitExpMenor(ExpMenor expMenor) {
+        return visitExpRel(expMenor);
+    }
+
+    @Override
+    public No visitExpMenorIgual(ExpMenorIgual expMenorIgual) {
+        return visitExpRel(expMenorIgual);
+    }
+
+    @Override
+    public No visitNaoLogico(NaoLogico naoLogico) {
+        naoLogico.b = bool(naoLogico.b);
+
+        return naoLogico;
+    }
+
+    @Override
+    public No visitELogico(ELogico eLogico) {
+        eLogico.esq = bool(eLogico.esq);
+        eLogico.dir = bool(eLogico.dir);
+
+        return eLogico;
+    }
+
+    @Override
+    public No visitOuLogico(OuLogico ouLogico) {
+        ouLogico.esq = bool(ouLogico.esq);
+        ouLogico.dir = bool(ouLogico.dir);
+
+        return ouLogico;
+    }
+
+    @Override
+    public No visitXorLogico(XorLogico xorLogico) {
+        xorLogico.esq = bool(xorLogico.esq);
+        xorLogico.dir = bool(xorLogico.dir);
+
+        return xorLogico;
+    }
+}
@@ -0,0 +1,130 @@
+package plp.enquanto.linguagem;
+
+import plp.enquanto.linguagem.Linguagem.*;
+
+/**
+ * Troca as operações aritméticas por versões que lançam ArithmeticException
+ * quando o resultado não cabe num int, em vez de dar a volta. Sem ele a
+ * árvore só tem as operações comuns, e a execução não paga pela
+ * verificação.
+ *
+ * Deve ser aplicado antes do Otimizador, para que as constantes dobradas
+ * também sejam verificadas; o Otimizador deixa sem dobrar as que
+ * estouram, e o erro acontece se a execução chegar a elas. O Fusor e o
+ * Especializador não reescrevem as operações verificadas.
+ */
+public class Verificador extends Transformador {
+    // as operações verificadas, para quem precisa distingui-las das comuns
+    interface Verificada {
+    }
+
+    @Override
+    public No visitExpNeg(ExpNeg expNeg) {
+        super.visitExpNeg(expNeg);
+
+        return expNeg instanceof Verificada ? expNeg : new NegVerificada(expNeg.exp);
+    }
+
+    @Override
+    public No visitExpSoma(ExpSoma expSoma) {
+        super.visitExpSoma(expSoma);
+
+        return expSoma instanceof Verificada ? expSoma : new SomaVerificada(expSoma.esq, expSoma.dir);
+    }
+
+    @Override
+    public No visitExpSub(ExpSub expSub) {
+        super.visitExpSub(expSub);
+
+        return expSub instanceof Verificada ? expSub : new SubVerificada(expSub.esq, expSub.dir);
+    }
+
+    @Override
+    public No visitExpMul(ExpMul expMul) {
+        super.visitExpMul(expMul);
+
+        return expMul instanceof Verificada ? expMul : new MulVerificada(expMul.esq, expMul.dir);
+    }
+
+    @Override
+    public No visitExpDiv(ExpDiv expDiv) {
+        super.visitExpDiv(expDiv);
+
+        return expDiv instanceof Verificada ? expDiv : new DivVerificada(expDiv.esq, expDiv.dir);
+    }
+
+    @Override
+    public No visitExpPot(ExpPot expPot) {
+        super.visitExpPot(expPot);
+
+        return expPot instanceof Verificada ? expPot : new PotVerificada(expPot.esq, expPot.dir);
+    }
+
+    static final class NegVerificada extends ExpNeg implements Verificada {
+        NegVerificada(Expressao exp) {
+            super(exp);
+        }
+
+        @Override
+        public int valor(Contexto contexto) {
+            return Aritmetica.negue(exp.valor(contexto));
+        }
+    }
+
+    static final class SomaVerificada extends ExpSoma implements Verificada {
+        SomaVerificada(Expressao esq, Expressao dir) {
+            super(esq, dir);
+        }
+
+        @Override
+        public int valor(Contexto contexto) {
+            return Aritmetica.some(esq.valor(contexto), dir.valor(contexto));
+        }
+    }
+
+    static final class SubVerificada extends ExpSub implements Verificada {
+        SubVerificada(Expressao esq, Expressao dir) {
+            super(esq, dir);
+        }
+
+        @Override
+        public int valor(Contexto contexto) {
+            return Aritmetica.subtraia(esq.valor(contexto), dir.valor(contexto));
+        }
+    }
+
+    static final class MulVerificada extends ExpMul implements Verificada {
+        MulVerificada(Expressao esq, Expressao dir) {
+            super(esq, dir);
+        }
+
+        @Override
+        public int valor(Contexto contexto) {
+            return Aritmetica.multiplique(esq.valor(contexto), dir.valor(contexto));
+        }
+    }
+
+    static final class DivVerificada extends ExpDiv implements Verificada {
+        DivVerificada(Expressao esq, Expressao dir) {
+            super(esq, dir);
+        }
+
+        @Override
+        public int valor(Contexto contexto) {
+            final int divisor = dir.valor(contexto);
+
+            return Aritmetica.divida(esq.valor(contexto), divisor);
+        }
+    }
+
+    static final class PotVerificada extends ExpPot implements Verificada {
+        PotVerificada(Expressao esq, Expressao dir) {
+            super(esq, dir);
+        }
+
+        @Override
+        public int valor(Contexto contexto) {
+            return Aritmetica.potenciaExata(esq.valor(contexto), dir.valor(contexto));
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package plp.enquanto.parser;
+
+import java.util.*;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import plp.enquanto.linguagem.Linguagem.*;
+
+/**
+ * Constrói a árvore da linguagem numa única passada: cada visita devolve o
+ * nó do trecho visitado, sem tabela auxiliar. As instruções do nível mais
+ * alto são construídas assim que o analisador as reconhece, e suas
+ * subárvores de análise são soltas em seguida; ao fim, só o Programa
+ * continua alcançável.
+ */
+public class MeuVisitor extends EnquantoBaseVisitor<Object> {
+    private final Leia leia = new Leia();
+    private final Skip skip = new Skip();
+    private Ambiente ambienteAtual = new Ambiente();
+
+    private List<Instrucao> instrucoes = new ArrayList<Instrucao>();
+    private Map<String, Funcao> funcoes = new Hashtable<String, Funcao>();
+
+    // funções que o trecho em construção redeclarou, com a declaração
+    // anterior, ou null quando não havia
+    private final Map<String, Funcao> anteriores = new HashMap<String, Funcao>();
+
+    private long construcao;
+
+    public Programa construa(EnquantoParser parser) {
+        return construa(parser, false);
+    }
+
+    /**
+     * Constrói um trecho de uma sessão interativa com a regra trecho. As
+     * variáveis e as funções declaradas pelos trechos anteriores continuam
+     * valendo, e o Programa devolvido só tem as instruções deste trecho.
+     * Um trecho com erros de sintaxe não declara funções.
+     */
+    public Programa construaTrecho(EnquantoParser parser) {
+        final Ambiente raiz = ambienteAtual;
+        boolean aceito = false;
+
+        anteriores.clear();
+
+        try {
+            final Programa trecho = construa(parser, true);
+
+            aceito = parser.getNumberOfSyntaxErrors() == 0;
+
+            return trecho;
+        } finally {
+            if (!aceito) {
+                for (Map.Entry<String, Funcao> anterior : anteriores.entrySet()) {
+                    if (anterior.getValue() == null)
+                        funcoes.remove(anterior.getKey());
+                    else
+                        funcoes.put(anterior.getKey(), anterior.getValue());
+                }
+
+                ambienteAtual = raiz;
+            }
+        }
+    }
+
+    private Programa construa(EnquantoParser parser, boolean trecho) {
+        final EnquantoBaseListener ouvinte = new EnquantoBaseListener() {
+            @Override
+            public void exitInstrucao(EnquantoParser.InstrucaoContext ctx) {
+                final long inicio = System.nanoTime();
+
+                instrucoes.add((Instrucao) visit(ctx));
+                construcao += System.nanoTime() - inicio;
+
+                // a instrução já virou nó; o pai não precisa mais dela
+                ctx.getParent().removeLastChild();
+            }
+        };
+
+        // uma nova análise do mesmo texto, depois de uma falha, recomeça
+        // a lista
+        instrucoes = new ArrayList<Instrucao>();
+        parser.addParseListener(ouvinte);
+
+        try {
+            if (trecho)
+                parser.trecho();
+            else
+                parser.programa();
+        } finally {
+            parser.removeParseListener(ouvinte);
+        }
+
+        return new Programa(instrucoes, ambienteAtual);
+    }
+
+    // nanossegundos construindo nós durante construa, fora a análise
+    public long getConstrucao() {
+        return construcao;
+    }
+
+    // construção a partir de uma árvore de análise já completa
+    @Override
+    public Object visitPrograma(EnquantoParser.ProgramaContext ctx) {
+        @SuppressWarnings("unchecked")
+        final List<Instrucao> cmds = (List<Instrucao>) no(ctx.seqInstr());
+
+        return new Programa(cmds, ambienteAtual);
+    }
+
+    @Override
+    public Object visitSeqInstr(EnquantoParser.SeqInstrContext ctx) {
+        final List<Instrucao> comandos = new ArrayList<Instrucao>();
+
+        for (EnquantoParser.InstrContext instrCtx : ctx.instr()) {
+            comandos.add(this.<Instrucao>no(instrCtx));
+        }
+
+        return comandos;
+    }
+
+    // filhos ausentes, após recuperação de erros, viram null como antes
+    @SuppressWarnings("unchecked")
+    private <T> T no(ParseTree ctx) {
+        return ctx == null ? null : (T) visit(ctx);
+    }
+
+    private static <T extends Posicionado> T naLinha(T no, ParserRuleContext ctx) {
+        no.setLinha(ctx.getStart().getLine());
+
+        return no;
+    }
+
+    @Override
+    public Object visitBooleano(final EnquantoParser.BooleanoContext ctx) {
+        return new Booleano(ctx.getText().equals("verdadeiro"));
+    }
+
+    @Override
+    public Object visitLeia(final EnquantoParser.LeiaContext ctx) {
+        return leia;
+    }
+
+    @Override
+    public Object visitSe(final EnquantoParser.SeContext ctx) {
+        final Bool condicao = no(ctx.bool(0));
+        final Comando entao = no(ctx.comando(0));
+
+        final List<SenaoSe> listaSenaoSe = new ArrayList<SenaoSe>();
+
+        for (int i = 1; i < ctx.bool().size(); i++) {
+            final Bool _condicao = no(ctx.bool(i));
+            final Comando _entao = no(ctx.comando(i));
+
+            listaSenaoSe.add(naLinha(new SenaoSe(_condicao, _entao), ctx.bool(i)));
+        }
+
+        final Comando senao = no(ctx.comando(ctx.bool().size()));
+
+        return naLinha(new Se(condicao, entao, listaSenaoSe, senao), ctx);
+    }
+
+    @Override
+    public Object visitPara(EnquantoParser.ParaContext ctx) {
+        final Expressao de = no(ctx.expressao(0));
+        final Expressao ate = no(ctx.expressao(1));
+        // sem passo, o laço anda de um em um
+        final Expressao passo = no(ctx.expressao(2));
+        final Comando faca = no(ctx.comando());
+
+        return naLinha(new Para(new Id(ctx.ID().getText(), ambienteAtual), de, ate, passo, faca), ctx);
+    }
+
+    @Override
+    public Object visitInteiro(final EnquantoParser.InteiroContext ctx) {
+        return new Inteiro(Integer.parseInt(ctx.getText()));
+    }
+
+    @Override
+    public Object visitSkip(final EnquantoParser.SkipContext ctx) {
+        return skip;
+    }
+
+    @Override
+    public Object visitEscreva(final EnquantoParser.EscrevaContext ctx) {
+        final Expressao exp = no(ctx.expressao());
+
+        return naLinha(new Escreva(exp), ctx);
+    }
+
+    @Override
+    public Object visitId(final EnquantoParser.IdContext ctx) {
+        return new Id(ctx.ID().getText(), ambienteAtual);
+    }
+
+    @Override
+    public Object visitSeqComando(final EnquantoParser.SeqComandoContext ctx) {
+        final List<Comando> comandos = new ArrayList<Comando>();
+
+        for (EnquantoParser.ComandoContext c : ctx.comando()) {
+            comandos.add(this.<Comando>no(c));
+        }
+
+        return comandos;
+    }
+
+    @Override
+    public Object visitDeclFuncao(EnquantoParser.DeclFuncaoContext ctx) {
+        ambienteAtual = new Ambiente(ambienteAtual);
+
+        final String id = ctx.ID().getText();
+        final Funcao funcao = naLinha(new Funcao(id, ambienteAtual), ctx);
+
+        final List<String> args = new ArrayList<String>();
+
+        // os argumentos ocupam os primeiros slots do quadro da função, na
+        // ordem da declaração, antes que o corpo resolva seus identificadores
+        for (TerminalNode idNode : ctx.argList().ID()) {
+            final String arg = idNode.getText();
+
+            ambienteAtual.slot(arg);
+            args.add(arg);
+        }
+
+        funcao.setArgs(args);
+
+        final Funcao anterior = funcoes.put(id, funcao);
+
+        if (!anteriores.containsKey(id))
+            anteriores.put(id, anterior);
+
+        funcao.setRetorno(this.<Expressao>no(ctx.expressao()));
+        ambienteAtual = ambienteAtual.getLegado();
+
+        return funcao;
+    }
+
+    @Override
+    public Object visitExprExecFuncao(EnquantoParser.ExprExecFuncaoContext ctx) {
+        final String id = ctx.execFuncao().ID().getText();
+        final Funcao funcao = funcoes.get(id);
+        final List<Expressao> params = new ArrayList<Expressao>();
+
+        for (EnquantoParser.ExpressaoContext expCtx : ctx.execFuncao().paramList().expressao()) {
+            params.add(this.<Expressao>no(expCtx));
+        }
+
+        return naLinha(new ChamadaFuncao(funcao, params), ctx);
+    }
+
+    // chamada como comando: as funções só calculam o retorno, e a chamada
+    // nunca foi avaliada; vira skip, para que nenhuma lista guarde null
+    @Override
+    public Object visitFuncao(EnquantoParser.FuncaoContext ctx) {
+        return skip;
+    }
+
+    @Override
+    public Object visitDecl(EnquantoParser.DeclContext ctx) {
+        return no(ctx.declFuncao());
+    }
+
+    @Override
+    public Object visitInstrucao(EnquantoParser.InstrucaoContext ctx) {
+        return no(ctx.getChild(0));
+    }
+
+    @Override
+    public Object visitAtribuicao(final EnquantoParser.AtribuicaoContext ctx) {
+        final String id = ctx.ID().getText();
+        final Expressao exp = no(ctx.expressao());
+
+        return naLinha(new Atribuicao(id, exp, ambienteAtual), ctx);
+    }
+
+    @Override
+    public Object visitBloco(final EnquantoParser.BlocoContext ctx) {
+        @SuppressWarnings("unchecked")
+        final List<Comando> cmds = (List<Comando>) no(ctx.seqComando());
+
+        return naLinha(new Bloco(cmds), ctx);
+    }
+
+    @Override
+    public Object visitExprArit(EnquantoParser.ExprAritContext ctx) {
+        return no(ctx.exprAdd());
+    }
+
+    @Override
+    public Object visitExprAdd(final EnquantoParser.ExprAddContext ctx) {
+        return exprBin(ctx);
+    }
+
+    @Override
+    public Object visitExprMul(EnquantoParser.ExprMulContext ctx) {
+        return exprBin(ctx);
+    }
+
+    @Override
+    public Object visitExprPot(EnquantoParser.ExprPotContext ctx) {
+        return exprBin(ctx);
+    }
+
+    private Expressao exprBin(ParserRuleContext ctx) {
+        Expressao esq = no(ctx.getChild(0));
+
+        for (int i = 2; i < ctx.getChildCount(); i += 2) {
+            final String op = ctx.getChild(i - 1).getText();
+            final Expressao dir = no(ctx.getChild(i));
+
+            esq = exprBin(op, esq, dir);
+        }
+
+        return esq;
+    }
+
+    private Expressao exprBin(String op, Expressao esq, Expressao dir) {
+        final Expressao exp;
+
+        if ("+".equals(op))
+            exp = new ExpSoma(esq, dir);
+        else if ("-".equals(op))
+            exp = new ExpSub(esq, dir);
+        else if ("*".equals(op))
+            exp = new ExpMul(esq, dir);
+        else if ("/".equals(op))
+            exp = new ExpDiv(esq, dir);
+        else if ("^".equals(op))
+            exp = new ExpPot(esq, dir);
+        else
+            exp = new ExpSoma(esq, dir);
+
+        return exp;
+    }
+
+    @Override
+    public Object visitEnquanto(final EnquantoParser.EnquantoContext ctx) {
+        final Bool condicao = no(ctx.bool());
+        final Comando comando = no(ctx.comando());
+
+        return naLinha(new Enquanto(condicao, comando), ctx);
+    }
+
+    @Override
+    public Object visitEscolha(EnquantoParser.EscolhaContext ctx) {
+        final int qtCasos = ctx.comando().size() - 1;
+
+        final Expressao padrao = no(ctx.expressao());
+        final Map<Integer, Comando> comandos = new LinkedHashMap<Integer, Comando>();
+
+        for (int i = 0; i < qtCasos; i++) {
+            final Integer _padrao = Integer.valueOf(ctx.INT(i).getText());
+            final Comando _comando = no(ctx.comando(i));
+
+            // rótulos repetidos: vale o primeiro caso
+            if (!comandos.containsKey(_padrao)) {
+                comandos.put(_padrao, _comando);
+            }
+        }
+
+        final Comando outro = no(ctx.comando(qtCasos));
+
+        return naLinha(new Escolha(padrao, comandos, outro), ctx);
+    }
+
+    @Override
+    public Object visitBoolPar(final EnquantoParser.BoolParContext ctx) {
+        return no(ctx.bool());
+    }
+
+    @Override
+    public Object visitNaoLogico(final EnquantoParser.NaoLogicoContext ctx) {
+        final Bool b = no(ctx.boolAtom());
+
+        return new NaoLogico(b);
+    }
+
+    @Override
+    public Object visitExprPar(final EnquantoParser.ExprParContext ctx) {
+        return no(ctx.expressao());
+    }
+
+    @Override
+    public Object visitExprNeg(EnquantoParser.ExprNegContext ctx) {
+        final Expressao exp = no(ctx.expressao());
+
+        return new ExpNeg(exp);
+    }
+
+    @Override
+    public Object visitExiba(final EnquantoParser.ExibaContext ctx) {
+        final String t = ctx.Texto().getText();
+        final String texto = t.substring(1, t.length() - 1);
+
+        return naLinha(new Exiba(texto), ctx);
+    }
+
+    @Override
+    public Object visitBoolSimples(final EnquantoParser.BoolSimplesContext ctx) {
+        return no(ctx.boolAtom());
+    }
+
+    @Override
+    public Object visitExprBool(final EnquantoParser.ExprBoolContext ctx) {
+        final Bool esq = no(ctx.boolAtom());
+        final Bool dir = no(ctx.bool());
+        final String op = ctx.operador_bool().getText();
+        final Bool exp;
+
+        if ("e".equals(op))
+            exp = new ELogico(esq, dir);
+        else if ("ou".equals(op))
+            exp = new OuLogico(esq, dir);
+        else
+            exp = new XorLogico(esq, dir);
+
+        return exp;
+    }
+
+    @Override
+    public Object visitExprRel(final EnquantoParser.ExprRelContext ctx) {
+        final Expressao esq = no(ctx.expressao(0));
+        final Expressao dir = no(ctx.expressao(1));
+        final String op = ctx.operador_rel().getText();
+        final Bool exp;
+
+        if ("<".equals(op))
+            exp = new ExpMenor(esq, dir);
+        else if (">".equals(op))
+            exp = new ExpMaior(esq, dir);
+        else if ("<=".equals(op))
+            exp = new ExpMenorIgual(esq, dir);
+        else if (">=".equals(op))
+            exp = new ExpMaiorIgual(esq, dir);
+        else if ("<>".equals(op))
+            exp = new ExpDesigual(esq, dir);
+        else
+            exp = new ExpIgual(esq, dir);
+
+        return exp;
+    }
+}